@@ -0,0 +1,67 @@
+package com.backspark.socks.benchmark;
+
+import com.backspark.socks.service.batch.BatchFormat;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Generates batch files of the benchmarks: six colors over all cotton parts.
+ */
+final class BatchFiles {
+
+    private static final String[] COLORS = {"red", "blue", "green", "black", "white", "yellow"};
+
+    private BatchFiles() {
+    }
+
+    static Path create(BatchFormat format, int rows) throws IOException {
+        Path file = Files.createTempFile("socks-benchmark-", "." + format.name().toLowerCase(Locale.ROOT));
+        switch (format) {
+            case XLSX -> writeXlsx(file, rows);
+            case CSV -> writeText(file, rows, "color,cottonPart,quantity", "%s,%d,%d");
+            case NDJSON -> writeText(file, rows, null, "{\"color\":\"%s\",\"cottonPart\":%d,\"quantity\":%d}");
+        }
+        return file;
+    }
+
+    private static void writeText(Path file, int rows, String header, String line) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (header != null) {
+                writer.write(header);
+                writer.newLine();
+            }
+            for (int i = 1; i <= rows; i++) {
+                writer.write(String.format(line, COLORS[i % COLORS.length], i % 101, 1 + i % 50));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static void writeXlsx(Path file, int rows) throws IOException {
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+             OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("Sheet1");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("color");
+            header.createCell(1).setCellValue("cottonPart");
+            header.createCell(2).setCellValue("quantity");
+            for (int i = 1; i <= rows; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(COLORS[i % COLORS.length]);
+                row.createCell(1).setCellValue(i % 101);
+                row.createCell(2).setCellValue(1 + i % 50);
+            }
+            workbook.write(out);
+            workbook.dispose();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.backspark.socks.benchmark;
+
+import com.backspark.socks.service.batch.BatchFormat;
+import com.backspark.socks.service.batch.CsvSockRowReader;
+import com.backspark.socks.service.batch.NdjsonSockRowReader;
+import com.backspark.socks.service.batch.SockRowReader;
+import com.backspark.socks.service.batch.StreamingXlsxSockRowReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse throughput of the batch formats on the same rows.
+ * <p>
+ * Scores are in rows per second. The gc profiler (enabled in build.gradle) reports the
+ * allocation per row, which should stay close to zero for csv and ndjson.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class BatchFormatBenchmark {
+
+    private static final int ROWS = 100_000;
+
+    @Param({"xlsx", "csv", "ndjson"})
+    public String format;
+
+    private Path file;
+    private SockRowReader sockRowReader;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        BatchFormat batchFormat = BatchFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        file = BatchFiles.create(batchFormat, ROWS);
+        sockRowReader = switch (batchFormat) {
+            case XLSX -> new StreamingXlsxSockRowReader();
+            case CSV -> new CsvSockRowReader();
+            case NDJSON -> new NdjsonSockRowReader();
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long read(Blackhole blackhole) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return sockRowReader.read(in, (rowNum, color, cottonPart, quantity) -> {
+                blackhole.consume(color);
+                blackhole.consume(cottonPart + quantity);
+            });
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.backspark.socks.benchmark;
+
+import com.backspark.socks.service.SockService;
+import com.backspark.socks.service.batch.BatchFormat;
+import com.backspark.socks.service.batch.BatchProgress;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Duration of a whole batch import, parsing to commit, by file size and format. Runs on the
+ * embedded database, see {@link EmbeddedApplication}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BatchImportBenchmark {
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    @Param({"xlsx", "csv", "ndjson"})
+    public String format;
+
+    private ConfigurableApplicationContext context;
+    private SockService sockService;
+    private BatchFormat batchFormat;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws IOException {
+        batchFormat = BatchFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        file = BatchFiles.create(batchFormat, rows);
+        context = EmbeddedApplication.start();
+        sockService = context.getBean(SockService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() throws IOException {
+        context.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long importBatch() throws IOException {
+        BatchProgress progress = new BatchProgress();
+        try (InputStream in = Files.newInputStream(file)) {
+            sockService.importBatch(in, file.getFileName().toString(), batchFormat, progress);
+        }
+        return progress.getRowsApplied();
+    }
+}
@@ -0,0 +1,65 @@
+package com.backspark.socks.benchmark;
+
+import com.backspark.socks.SocksApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Starts the application with the {@code embedded} profile on a private in-memory H2 database,
+ * so the benchmarks run offline. Every setting can be overridden with a system property of the
+ * benchmark JVM, e.g. {@code -Dspring.profiles.active=default -Dspring.datasource.url=jdbc:postgresql://...}
+ * to measure against PostgreSQL.
+ */
+final class EmbeddedApplication {
+
+    private EmbeddedApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        return run(WebApplicationType.NONE, properties);
+    }
+
+    /**
+     * Starts the application with the web layer on a random port, see {@link #port}.
+     */
+    static ConfigurableApplicationContext startServer(String... properties) {
+        String[] withPort = Arrays.copyOf(properties, properties.length + 1);
+        withPort[properties.length] = "server.port=0";
+        return run(WebApplicationType.SERVLET, withPort);
+    }
+
+    static int port(ConfigurableApplicationContext context) {
+        return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+    }
+
+    private static ConfigurableApplicationContext run(WebApplicationType webApplicationType, String... properties) {
+        Map<String, String> settings = new LinkedHashMap<>();
+        settings.put("spring.profiles.active", "embedded");
+        // Every trial gets a fresh database
+        settings.put("spring.datasource.url",
+                "jdbc:h2:mem:socks-" + UUID.randomUUID() + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1");
+        for (String property : properties) {
+            int separator = property.indexOf('=');
+            settings.put(property.substring(0, separator), property.substring(separator + 1));
+        }
+
+        // Command line arguments win over application.yml; system properties win over both
+        List<String> args = new ArrayList<>();
+        settings.forEach((key, value) -> {
+            if (System.getProperty(key) == null) {
+                args.add("--" + key + "=" + value);
+            }
+        });
+        return new SpringApplicationBuilder(SocksApplication.class)
+                .web(webApplicationType)
+                .run(args.toArray(String[]::new));
+    }
+}
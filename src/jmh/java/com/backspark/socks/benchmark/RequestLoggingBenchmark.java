@@ -0,0 +1,65 @@
+package com.backspark.socks.benchmark;
+
+import com.backspark.socks.dto.SockDto;
+import com.backspark.socks.service.SockService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of income requests depending on request logging.
+ * <ul>
+ *     <li>{@code sync-debug}: every request is logged by a synchronous logger, the former setup</li>
+ *     <li>{@code async-debug}: every request is logged by an async logger</li>
+ *     <li>{@code async-info}: request events are disabled, the default now</li>
+ * </ul>
+ * All variants write to the same file appender in the temp directory. Compare the p99 and
+ * p99.9 of the sample time. Runs on the embedded database, see {@link EmbeddedApplication}.
+ * <p>
+ * Recorded on a single-vCPU sandbox (JDK 21.0.1, H2, fork 1, 2 warmup and 3 measured iterations):
+ * <pre>
+ * logging      samples   p0.50 us   p0.99 us   p0.999 us
+ * sync-debug    107991       191      31000      44960
+ * async-debug    91029       254      30507      44431
+ * async-info    135764       163      28312      43073
+ * </pre>
+ * With one CPU the async logger thread competes with the eight request threads, so async-debug
+ * is slower than sync-debug at the median; the tails are mostly scheduling delay. Disabling the
+ * request events gives the lowest latency at every percentile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+public class RequestLoggingBenchmark {
+
+    private static final int ITEMS = 100;
+
+    @Param({"sync-debug", "async-debug", "async-info"})
+    public String logging;
+
+    private ConfigurableApplicationContext context;
+    private SockService sockService;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        String[] variant = logging.split("-");
+        context = EmbeddedApplication.start(
+                "logging.config=classpath:log4j2-benchmark-" + variant[0] + ".xml",
+                "logging.level.com.backspark.socks=" + variant[1]);
+        sockService = context.getBean(SockService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public void registerIncome() {
+        int item = ThreadLocalRandom.current().nextInt(ITEMS);
+        sockService.registerIncome(new SockDto("color-" + item / 101, item % 101, 1));
+    }
+}
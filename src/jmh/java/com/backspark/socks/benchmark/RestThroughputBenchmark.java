@@ -0,0 +1,73 @@
+package com.backspark.socks.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end throughput of the REST endpoints: sixteen HTTP clients against the embedded
+ * server, JSON binding, validation and the database included. Runs on the embedded database,
+ * see {@link EmbeddedApplication}.
+ * <p>
+ * With {@code admission} the default bulkheads are in front of the endpoints; the secondary
+ * {@code throttled} result counts the requests they rejected. The rate limit stays off, one load
+ * generator is a single client address.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+public class RestThroughputBenchmark {
+
+    private static final int ITEMS = 1000;
+
+    @Param({"false", "true"})
+    public boolean admission;
+
+    private ConfigurableApplicationContext context;
+    private SocksHttpClient client;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException, InterruptedException {
+        context = EmbeddedApplication.startServer(admission
+                ? "socks.admission.requests-per-second=0"
+                : "socks.admission.enabled=false");
+        client = new SocksHttpClient(EmbeddedApplication.port(context));
+        for (int item = 0; item < ITEMS; item++) {
+            client.income(item, 1_000_000);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() {
+        context.close();
+    }
+
+    @Benchmark
+    public int incomeThenOutcome(Rejections rejections) throws IOException, InterruptedException {
+        int item = ThreadLocalRandom.current().nextInt(ITEMS);
+        return rejections.count(client.income(item, 1)) + rejections.count(client.outcome(item, 1));
+    }
+
+    @Benchmark
+    public int total(Rejections rejections) throws IOException, InterruptedException {
+        return rejections.count(client.total(ThreadLocalRandom.current().nextInt(ITEMS)));
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Rejections {
+
+        public long throttled;
+
+        int count(int status) {
+            if (status == SocksHttpClient.THROTTLED) {
+                throttled++;
+            }
+            return status;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.backspark.socks.benchmark;
+
+import com.backspark.socks.model.SockKey;
+import com.backspark.socks.repository.SockRepository;
+import com.backspark.socks.service.SockService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of listing and total queries by catalog size, with the query cache disabled so
+ * every call reaches the database. Runs on the embedded database, see {@link EmbeddedApplication}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SockQueryBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"1000", "100000"})
+    public int catalog;
+
+    private ConfigurableApplicationContext context;
+    private SockService sockService;
+    private int colors;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = EmbeddedApplication.start("socks.cache.enabled=false");
+        sockService = context.getBean(SockService.class);
+        SockRepository sockRepository = context.getBean(SockRepository.class);
+
+        colors = (catalog + 100) / 101;
+        Map<SockKey, Integer> quantities = new HashMap<>();
+        for (int item = 0; item < catalog; item++) {
+            quantities.put(new SockKey("color-" + item / 101, item % 101), 1 + item % 50);
+        }
+        context.getBean(TransactionTemplate.class).executeWithoutResult(status -> sockRepository.addQuantities(quantities));
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object filteredFirstPage() {
+        String color = "color-" + ThreadLocalRandom.current().nextInt(colors);
+        return sockService.getSocks(color, 20, 80, PageRequest.of(0, PAGE_SIZE, Sort.by("color").and(Sort.by("id"))));
+    }
+
+    @Benchmark
+    public Object deepPage() {
+        int page = catalog / PAGE_SIZE / 2;
+        return sockService.getSocks(null, null, null, PageRequest.of(page, PAGE_SIZE, Sort.by("color").and(Sort.by("id"))));
+    }
+
+    @Benchmark
+    public long total() {
+        return sockService.countSocks(null, null, null, 20, 80);
+    }
+}
@@ -0,0 +1,54 @@
+package com.backspark.socks.benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+/**
+ * Minimal client of the socks REST endpoints for the HTTP benchmarks. Items are numbered:
+ * item {@code n} is color {@code color-(n / 101)} with cotton part {@code n % 101}. A request
+ * rejected by admission control returns {@link #THROTTLED}, any other error fails the benchmark.
+ */
+final class SocksHttpClient {
+
+    static final int THROTTLED = 429;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final String baseUrl;
+
+    SocksHttpClient(int port) {
+        this.baseUrl = "http://localhost:" + port + "/api/socks";
+    }
+
+    int income(int item, int quantity) throws IOException, InterruptedException {
+        return send(movement("income", item, quantity));
+    }
+
+    int outcome(int item, int quantity) throws IOException, InterruptedException {
+        return send(movement("outcome", item, quantity));
+    }
+
+    int total(int item) throws IOException, InterruptedException {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/total?color=color-" + item / 101 + "&cottonPartMin=20&cottonPartMax=80"))
+                .GET()
+                .build());
+    }
+
+    private HttpRequest movement(String type, int item, int quantity) {
+        String body = "{\"color\":\"color-" + item / 101 + "\",\"cottonPart\":" + item % 101 + ",\"quantity\":" + quantity + "}";
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/" + type))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private int send(HttpRequest request) throws IOException, InterruptedException {
+        int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (status != 200 && status != THROTTLED) {
+            throw new IllegalStateException(request.method() + " " + request.uri() + " returned " + status);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,61 @@
+package com.backspark.socks.benchmark;
+
+import com.backspark.socks.dto.SockDto;
+import com.backspark.socks.service.SockService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of income and outcome movements under contention, synchronous vs write-behind.
+ * <p>
+ * Sixteen threads move socks of {@code items} sock items: with one item every movement
+ * competes for the same row, with many they mostly do not. Runs on the embedded database,
+ * see {@link EmbeddedApplication}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+public class StockMovementBenchmark {
+
+    @Param({"false", "true"})
+    public boolean writeBehind;
+
+    @Param({"1", "1000"})
+    public int items;
+
+    private ConfigurableApplicationContext context;
+    private SockService sockService;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws IOException {
+        context = EmbeddedApplication.start(
+                "socks.write-behind.enabled=" + writeBehind,
+                "socks.write-behind.journal-dir=" + Files.createTempDirectory("socks-journal-"));
+        sockService = context.getBean(SockService.class);
+        for (int item = 0; item < items; item++) {
+            sockService.registerIncome(sockDto(item, 1_000_000));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public void incomeThenOutcome() {
+        SockDto sockDto = sockDto(ThreadLocalRandom.current().nextInt(items), 1);
+        sockService.registerIncome(sockDto);
+        sockService.registerOutcome(sockDto);
+    }
+
+    private static SockDto sockDto(int item, int quantity) {
+        return new SockDto("color-" + item / 101, item % 101, quantity);
+    }
+}
@@ -0,0 +1,99 @@
+package com.backspark.socks.benchmark;
+
+import com.backspark.socks.service.batch.SockRowReader;
+import com.backspark.socks.service.batch.StreamingXlsxSockRowReader;
+import com.backspark.socks.service.batch.WorkbookXlsxSockRowReader;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the streaming and the in-memory .xlsx readers.
+ * <p>
+ * Throughput is reported in files per second, multiply it by {@code rows} to get rows per second.
+ * The gc profiler (enabled in build.gradle) reports allocation rates. Peak heap of every iteration is printed after it ends.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class XlsxReaderBenchmark {
+
+    private static final String[] COLORS = {"red", "blue", "green", "black", "white", "yellow"};
+
+    @Param({"10000", "100000"})
+    public int rows;
+
+    @Param({"streaming", "workbook"})
+    public String reader;
+
+    private Path file;
+    private SockRowReader sockRowReader;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        file = Files.createTempFile("socks-benchmark-", ".xlsx");
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+             OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("Sheet1");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("color");
+            header.createCell(1).setCellValue("cottonPart");
+            header.createCell(2).setCellValue("quantity");
+            for (int i = 1; i <= rows; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(COLORS[i % COLORS.length]);
+                row.createCell(1).setCellValue(i % 101);
+                row.createCell(2).setCellValue(1 + i % 50);
+            }
+            workbook.write(out);
+            workbook.dispose();
+        }
+        sockRowReader = "streaming".equals(reader) ? new StreamingXlsxSockRowReader() : new WorkbookXlsxSockRowReader();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void printPeakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.printf("%n[%s, %d rows] peak heap: %d MB%n", reader, rows, peak / (1024 * 1024));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long read(Blackhole blackhole) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return sockRowReader.read(in, (rowNum, color, cottonPart, quantity) -> {
+                blackhole.consume(color);
+                blackhole.consume(cottonPart + quantity);
+            });
+        }
+    }
+}
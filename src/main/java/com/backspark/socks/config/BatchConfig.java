@@ -0,0 +1,29 @@
+package com.backspark.socks.config;
+
+import com.backspark.socks.service.batch.BatchFormat;
+import com.backspark.socks.service.batch.CsvSockRowReader;
+import com.backspark.socks.service.batch.NdjsonSockRowReader;
+import com.backspark.socks.service.batch.SockRowReader;
+import com.backspark.socks.service.batch.SockRowReaders;
+import com.backspark.socks.service.batch.StreamingXlsxSockRowReader;
+import com.backspark.socks.service.batch.WorkbookXlsxSockRowReader;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+@Configuration
+public class BatchConfig {
+
+    @Bean
+    public SockRowReaders sockRowReaders(SocksProperties properties) {
+        SockRowReader xlsxReader = switch (properties.getBatch().getXlsxReader()) {
+            case STREAMING -> new StreamingXlsxSockRowReader();
+            case WORKBOOK -> new WorkbookXlsxSockRowReader();
+        };
+        return new SockRowReaders(Map.of(
+                BatchFormat.XLSX, xlsxReader,
+                BatchFormat.CSV, new CsvSockRowReader(),
+                BatchFormat.NDJSON, new NdjsonSockRowReader()));
+    }
+}
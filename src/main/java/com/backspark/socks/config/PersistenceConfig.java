@@ -0,0 +1,16 @@
+package com.backspark.socks.config;
+
+import com.backspark.socks.repository.SqlDialect;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class PersistenceConfig {
+
+    @Bean
+    public SqlDialect sqlDialect(DataSource dataSource) {
+        return SqlDialect.detect(dataSource);
+    }
+}
@@ -0,0 +1,281 @@
+package com.backspark.socks.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Application settings under the {@code socks.*} prefix.
+ */
+@Data
+@ConfigurationProperties(prefix = "socks")
+public class SocksProperties {
+
+    private final Batch batch = new Batch();
+
+    private final WriteBehind writeBehind = new WriteBehind();
+
+    private final Cache cache = new Cache();
+
+    private final Retry retry = new Retry();
+
+    private final Export export = new Export();
+
+    private final Index index = new Index();
+
+    private final Admission admission = new Admission();
+
+    /**
+     * Settings of the batch upload from files.
+     */
+    @Data
+    public static class Batch {
+
+        /**
+         * Reader used for .xlsx files.
+         */
+        private XlsxReaderMode xlsxReader = XlsxReaderMode.STREAMING;
+
+        /**
+         * Number of sock items written by one multi-row upsert.
+         */
+        private int chunkSize = 1000;
+
+        /**
+         * Number of file rows validated and committed together.
+         */
+        private int rowsPerChunk = 10_000;
+
+        /**
+         * Number of threads validating and aggregating chunks.
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * How chunks are committed.
+         */
+        private CommitMode commitMode = CommitMode.PER_CHUNK;
+
+        /**
+         * Number of uploads imported at the same time.
+         */
+        private int maxConcurrentImports = 2;
+
+        /**
+         * Number of uploads waiting for a free slot before new ones are rejected.
+         */
+        private int maxQueuedImports = 8;
+
+        /**
+         * How long the status of a finished upload is kept.
+         */
+        private Duration jobRetention = Duration.ofHours(1);
+
+        /**
+         * Run imports on virtual threads instead of a fixed pool of platform threads.
+         */
+        private boolean virtualThreads = true;
+    }
+
+    /**
+     * Settings of the write-behind mode of income and outcome.
+     */
+    @Data
+    public static class WriteBehind {
+
+        /**
+         * Apply movements in memory and flush them to the database periodically.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Delay between two flushes.
+         */
+        private Duration flushInterval = Duration.ofSeconds(1);
+
+        /**
+         * Directory of the movement journal.
+         */
+        private String journalDir = "data/journal";
+
+        /**
+         * Force every journal record to disk. Without it a record survives a process crash
+         * but not a power loss.
+         */
+        private boolean fsync = true;
+
+        /**
+         * Number of lock stripes for the in-memory counters, rounded up to a power of two.
+         */
+        private int stripes = 64;
+    }
+
+    /**
+     * Settings of the in-memory cache of listings and totals.
+     */
+    @Data
+    public static class Cache {
+
+        private boolean enabled = true;
+
+        /**
+         * Maximum number of cached listing pages.
+         */
+        private long maxListings = 10_000;
+
+        /**
+         * Maximum number of cached totals.
+         */
+        private long maxTotals = 10_000;
+
+        /**
+         * Time after which an entry is evicted even if nothing changed.
+         */
+        private Duration ttl = Duration.ofMinutes(5);
+    }
+
+    /**
+     * Retries of stock movements that lost a race with a concurrent write.
+     */
+    @Data
+    public static class Retry {
+
+        /**
+         * Attempts including the first one.
+         */
+        private int maxAttempts = 5;
+
+        /**
+         * Upper bound of the first backoff, doubled on every further attempt.
+         */
+        private Duration initialBackoff = Duration.ofMillis(5);
+
+        private Duration maxBackoff = Duration.ofMillis(200);
+    }
+
+    /**
+     * Settings of the streaming stock export.
+     */
+    @Data
+    public static class Export {
+
+        /**
+         * Rows fetched from the database cursor per round trip.
+         */
+        private int fetchSize = 1000;
+
+        /**
+         * Size of the response buffer in bytes, flushed to the client whenever it is full.
+         */
+        private int bufferSize = 64 * 1024;
+    }
+
+    /**
+     * Settings of the in-memory stock index.
+     */
+    @Data
+    public static class Index {
+
+        /**
+         * Answer totals from prefix sums in memory instead of the database. Requires a single
+         * application instance per database.
+         */
+        private boolean enabled = false;
+    }
+
+    /**
+     * Rate limit and bulkheads of the API.
+     */
+    @Data
+    public static class Admission {
+
+        private boolean enabled = true;
+
+        /**
+         * Header carrying the API key of the client.
+         */
+        private String clientHeader = "X-API-Key";
+
+        /**
+         * API keys that get a rate limit of their own. Requests with any other key or without
+         * one are limited per remote address, so made-up keys cannot multiply the rate.
+         */
+        private Set<String> trustedKeys = new HashSet<>();
+
+        /**
+         * Sustained requests per second of one client, 0 disables the rate limit.
+         */
+        private double requestsPerSecond = 200;
+
+        /**
+         * Requests a client may send at once on top of the sustained rate.
+         */
+        private int burst = 400;
+
+        /**
+         * Number of clients whose rate is tracked, idle ones are evicted first.
+         */
+        private long maxClients = 100_000;
+
+        /**
+         * Share of the connection pool only writes may use; reads and batch transfers together
+         * never hold more than the rest.
+         */
+        private double writeReserve = 0.5;
+
+        private final BulkheadLimits reads = new BulkheadLimits(0, Duration.ofMillis(100));
+
+        private final BulkheadLimits writes = new BulkheadLimits(0, Duration.ofMillis(50));
+
+        /**
+         * File uploads and exports.
+         */
+        private final BulkheadLimits batch = new BulkheadLimits(0, Duration.ZERO);
+    }
+
+    /**
+     * Limits of one bulkhead.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class BulkheadLimits {
+
+        /**
+         * Requests handled at the same time, 0 derives the limit from the connection pool.
+         */
+        private int maxConcurrent;
+
+        /**
+         * How long a request waits for a free slot before it is rejected.
+         */
+        private Duration maxWait;
+    }
+
+    public enum CommitMode {
+        /**
+         * Every chunk is committed on its own; a failure keeps the chunks committed before it.
+         */
+        PER_CHUNK,
+        /**
+         * Chunks are committed to a staging table and merged at the end; a failure applies nothing.
+         */
+        STAGED
+    }
+
+    public enum XlsxReaderMode {
+        /**
+         * Row-by-row SAX parsing, memory does not depend on the file size.
+         */
+        STREAMING,
+        /**
+         * Loads the whole workbook into memory.
+         */
+        WORKBOOK
+    }
+}
@@ -0,0 +1,26 @@
+package com.backspark.socks.config;
+
+import com.backspark.socks.controller.AdmissionInterceptor;
+import com.backspark.socks.service.admission.AdmissionControl;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Optional;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final Optional<AdmissionControl> admissionControl;
+
+    public WebConfig(Optional<AdmissionControl> admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        admissionControl.ifPresent(control -> registry
+                .addInterceptor(new AdmissionInterceptor(control))
+                .addPathPatterns("/api/socks/**"));
+    }
+}
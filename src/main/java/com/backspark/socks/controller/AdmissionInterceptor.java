@@ -0,0 +1,54 @@
+package com.backspark.socks.controller;
+
+import com.backspark.socks.service.admission.AdmissionControl;
+import com.backspark.socks.service.admission.Bulkhead;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Runs every API request through {@link AdmissionControl}. A rejection is thrown from
+ * {@link #preHandle}, so it is answered by the exception handlers like any controller error.
+ * <p>
+ * Requests are limited per trusted API key in the client header, all others per remote address.
+ * An async request such as an export keeps its bulkhead slot until the async dispatch completes.
+ */
+public class AdmissionInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String BULKHEAD = AdmissionInterceptor.class.getName() + ".BULKHEAD";
+
+    private final AdmissionControl admissionControl;
+
+    public AdmissionInterceptor(AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(BULKHEAD) != null) {
+            // Async dispatch of a request admitted before
+            return true;
+        }
+        String client = admissionControl.client(request.getHeader(admissionControl.getClientHeader()), request.getRemoteAddr());
+        request.setAttribute(BULKHEAD, admissionControl.admit(client, lane(request)));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(BULKHEAD) instanceof Bulkhead bulkhead) {
+            request.removeAttribute(BULKHEAD);
+            bulkhead.exit();
+        }
+    }
+
+    static AdmissionControl.Lane lane(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        boolean read = HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+        if (path.equals("/api/socks/export") || !read && path.equals("/api/socks/batch")) {
+            return AdmissionControl.Lane.BATCH;
+        }
+        return read ? AdmissionControl.Lane.READ : AdmissionControl.Lane.WRITE;
+    }
+}
@@ -1,21 +1,47 @@
 package com.backspark.socks.controller;
 
+import com.backspark.socks.dto.BulkMovementRequest;
+import com.backspark.socks.dto.BulkMovementResultDto;
+import com.backspark.socks.dto.CottonOperator;
+import com.backspark.socks.dto.ImportJobDto;
+import com.backspark.socks.dto.SockCursor;
 import com.backspark.socks.dto.SockDto;
+import com.backspark.socks.dto.SockWindowDto;
+import com.backspark.socks.dto.TurnoverDto;
+import com.backspark.socks.dto.TurnoverGranularity;
 import com.backspark.socks.model.Sock;
+import com.backspark.socks.service.ImportJobService;
+import com.backspark.socks.service.SockExportService;
 import com.backspark.socks.service.SockService;
+import com.backspark.socks.service.StockAnalyticsService;
+import com.backspark.socks.service.batch.BatchFormat;
+import com.backspark.socks.service.batch.ImportJob;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PagedModel;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/socks")
@@ -24,16 +50,24 @@ public class SockController {
 
     private static final Logger logger = LoggerFactory.getLogger(SockController.class);
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final SockService sockService;
+    private final ImportJobService importJobService;
+    private final SockExportService sockExportService;
+    private final StockAnalyticsService stockAnalyticsService;
 
-    public SockController(SockService sockService) {
+    public SockController(SockService sockService, ImportJobService importJobService, SockExportService sockExportService,
+                          StockAnalyticsService stockAnalyticsService) {
         this.sockService = sockService;
+        this.importJobService = importJobService;
+        this.sockExportService = sockExportService;
+        this.stockAnalyticsService = stockAnalyticsService;
     }
 
     @PostMapping("/income")
     @Operation(summary = "Регистрация прихода носков", description = "Увеличивает количество носков на складе.")
     public ResponseEntity<Void> registerIncome(@Valid @RequestBody SockDto sockDto) {
-        logger.info("Received request to register income: {}", sockDto);
         sockService.registerIncome(sockDto);
         return ResponseEntity.ok().build();
     }
@@ -41,28 +75,117 @@ public class SockController {
     @PostMapping("/outcome")
     @Operation(summary = "Регистрация отпуска носков", description = "Уменьшает количество носков на складе, если их хватает.")
     public ResponseEntity<Void> registerOutcome(@Valid @RequestBody SockDto sockDto) {
-        logger.info("Received request to register outcome: {}", sockDto);
         sockService.registerOutcome(sockDto);
         return ResponseEntity.ok().build();
     }
 
+    @PostMapping("/movements")
+    @Operation(summary = "Пакетная регистрация прихода и отпуска", description = "Принимает список строк прихода и отпуска. В режиме ATOMIC применяет все строки в одной транзакции или ни одной, в режиме PER_LINE — каждую строку отдельно. Возвращает результат по каждой строке.")
+    public ResponseEntity<BulkMovementResultDto> registerMovements(@Valid @RequestBody BulkMovementRequest request) {
+        BulkMovementResultDto result = sockService.registerMovements(request);
+        // An atomic request that was rolled back conflicts with the current stock
+        HttpStatus status = request.getMode() == BulkMovementRequest.Mode.ATOMIC && result.rejected() > 0
+                ? HttpStatus.CONFLICT
+                : HttpStatus.OK;
+        return ResponseEntity.status(status).body(result);
+    }
+
     @GetMapping
     @Operation(summary = "Получение списка носков", description = "Возвращает список носков с возможностью фильтрации, сортировки и пагинации.")
-    public ResponseEntity<List<Sock>> getSocks(
+    public ResponseEntity<PagedModel<Sock>> getSocks(
             @Parameter(description = "Цвет носков") @RequestParam(required = false) String color,
             @Parameter(description = "Минимальное содержание хлопка") @RequestParam(required = false) Integer cottonPartMin,
             @Parameter(description = "Максимальное содержание хлопка") @RequestParam(required = false) Integer cottonPartMax,
             @Parameter(description = "Номер страницы") @RequestParam(defaultValue = "0") int page,
             @Parameter(description = "Размер страницы") @RequestParam(defaultValue = "10") int size,
             @Parameter(description = "Сортировка") @RequestParam(defaultValue = "color") String sortBy) {
-        logger.info("Received request to get socks with filters - color: {}, cottonPartMin: {}, cottonPartMax: {}", color, cottonPartMin, cottonPartMax);
-        List<Sock> socks = sockService.getSocks(color, cottonPartMin, cottonPartMax, PageRequest.of(page, size, Sort.by(sortBy)));
-        return ResponseEntity.ok(socks);
+        if (logger.isDebugEnabled()) {
+            logger.debug("event=list color={} cottonPartMin={} cottonPartMax={} page={} size={}", color, cottonPartMin, cottonPartMax, page, size);
+        }
+        // id makes the order total, so rows do not move between pages
+        PageRequest pageRequest = PageRequest.of(Math.max(page, 0), pageSize(size), Sort.by(sortBy).and(Sort.by("id")));
+        Page<Sock> socks = sockService.getSocks(color, cottonPartMin, cottonPartMax, pageRequest);
+        return ResponseEntity.ok(new PagedModel<>(socks));
+    }
+
+    @GetMapping("/total")
+    @Operation(summary = "Общее количество носков", description = "Возвращает суммарное количество носков, подходящих под фильтры. Содержание хлопка сравнивается операторами moreThan, lessThan, equal и/или ограничивается диапазоном.")
+    public ResponseEntity<Long> countSocks(
+            @Parameter(description = "Цвет носков") @RequestParam(required = false) String color,
+            @Parameter(description = "Оператор сравнения: moreThan, lessThan, equal") @RequestParam(required = false) String operator,
+            @Parameter(description = "Содержание хлопка для сравнения") @RequestParam(required = false) Integer cottonPart,
+            @Parameter(description = "Минимальное содержание хлопка") @RequestParam(required = false) Integer cottonPartMin,
+            @Parameter(description = "Максимальное содержание хлопка") @RequestParam(required = false) Integer cottonPartMax) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("event=total color={} operator={} cottonPart={} cottonPartMin={} cottonPartMax={}",
+                    color, operator, cottonPart, cottonPartMin, cottonPartMax);
+        }
+        CottonOperator cottonOperator = operator != null ? CottonOperator.fromValue(operator) : null;
+        return ResponseEntity.ok(sockService.countSocks(color, cottonOperator, cottonPart, cottonPartMin, cottonPartMax));
     }
 
-    @PostMapping("/batch")
-    @Operation(summary = "Загрузка партий носков из файла", description = "Позволяет загружать партии носков из Excel файла.")
-    public ResponseEntity<String> uploadBatch(@Parameter(description = "Excel файл с партиями носков") @RequestParam("file") MultipartFile file) {
+    @GetMapping("/scroll")
+    @Operation(summary = "Постраничный обход носков по курсору", description = "Возвращает носки после курсора в порядке (color, cottonPart) и курсор следующей страницы. Подходит для глубоких страниц.")
+    public ResponseEntity<SockWindowDto> scrollSocks(
+            @Parameter(description = "Цвет носков") @RequestParam(required = false) String color,
+            @Parameter(description = "Минимальное содержание хлопка") @RequestParam(required = false) Integer cottonPartMin,
+            @Parameter(description = "Максимальное содержание хлопка") @RequestParam(required = false) Integer cottonPartMax,
+            @Parameter(description = "Курсор из предыдущего ответа") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Размер страницы") @RequestParam(defaultValue = "10") int size) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("event=scroll color={} cottonPartMin={} cottonPartMax={} size={}", color, cottonPartMin, cottonPartMax, size);
+        }
+        SockCursor position = cursor != null ? SockCursor.decode(cursor) : null;
+        return ResponseEntity.ok(sockService.scrollSocks(color, cottonPartMin, cottonPartMax, position, pageSize(size)));
+    }
+
+    @GetMapping("/analytics/turnover")
+    @Operation(summary = "Оборот носков по периодам", description = "Возвращает приход и расход носков по часам или дням в разрезе цвета и диапазона содержания хлопка. Считается по агрегатам истории движений, не по самим движениям.")
+    public ResponseEntity<List<TurnoverDto>> getTurnover(
+            @Parameter(description = "Начало периода, например 2024-01-01T00:00:00Z") @RequestParam Instant from,
+            @Parameter(description = "Конец периода, по умолчанию текущий момент; период расширяется до целых часов или дней") @RequestParam(required = false) Instant to,
+            @Parameter(description = "Шаг: hour или day") @RequestParam(defaultValue = "day") String granularity,
+            @Parameter(description = "Цвет носков") @RequestParam(required = false) String color,
+            @Parameter(description = "Ширина диапазона содержания хлопка в процентах") @RequestParam(defaultValue = "10") int cottonBand) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("event=turnover from={} to={} granularity={} color={} cottonBand={}", from, to, granularity, color, cottonBand);
+        }
+        return ResponseEntity.ok(stockAnalyticsService.getTurnover(TurnoverGranularity.fromValue(granularity), from,
+                to != null ? to : Instant.now(), color, cottonBand));
+    }
+
+    @GetMapping("/export")
+    @Operation(summary = "Выгрузка остатков носков", description = "Потоково выгружает остатки в CSV или NDJSON в формате загрузки партий, не собирая их в памяти. Сжимает ответ gzip, если клиент передал Accept-Encoding: gzip.")
+    public ResponseEntity<StreamingResponseBody> exportSocks(
+            @Parameter(description = "Формат: csv или ndjson") @RequestParam(defaultValue = "csv") String format,
+            @Parameter(description = "Цвет носков") @RequestParam(required = false) String color,
+            @Parameter(description = "Минимальное содержание хлопка") @RequestParam(required = false) Integer cottonPartMin,
+            @Parameter(description = "Максимальное содержание хлопка") @RequestParam(required = false) Integer cottonPartMax,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        // Validated before the response is committed, later errors can only abort the transfer
+        BatchFormat exportFormat = SockExportService.exportFormat(format);
+        boolean gzip = acceptsGzip(acceptEncoding);
+        logger.info("Received request to export socks as {} (gzip={})", exportFormat, gzip);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(new MediaType(exportFormat.getMediaType(), StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("socks" + exportFormat.getExtension())
+                        .build()
+                        .toString())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        // Written on the MVC async executor, the Tomcat worker returns to the pool right away
+        return response.body(out -> sockExportService.export(exportFormat, color, cottonPartMin, cottonPartMax, gzip, out));
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Загрузка партий носков из файла", description = "Принимает файл .xlsx, .csv или .ndjson с партиями носков и запускает его импорт в фоне. Возвращает идентификатор задачи. Повторная загрузка уже импортированного файла ничего не меняет.")
+    public ResponseEntity<?> uploadBatch(
+            @Parameter(description = "Файл с партиями носков") @RequestParam("file") MultipartFile file,
+            @Parameter(description = "Ключ идемпотентности; без него повторной считается загрузка с тем же содержимым") @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         logger.info("Received request to upload batch file: {}", file.getOriginalFilename());
 
         if (file.isEmpty()) {
@@ -70,12 +193,48 @@ public class SockController {
             return ResponseEntity.badRequest().body("File is empty");
         }
 
-        if (!file.getOriginalFilename().endsWith(".xlsx")) {
+        Optional<BatchFormat> format = BatchFormat.fromFileName(file.getOriginalFilename());
+        if (format.isEmpty()) {
             logger.warn("Upload failed: invalid file format");
-            return ResponseEntity.badRequest().body("Invalid file format. Only .xlsx files are supported.");
+            return ResponseEntity.badRequest().body("Invalid file format. Supported formats: .xlsx, .csv, .ndjson");
         }
 
-        sockService.uploadBatch(file);
-        return ResponseEntity.ok("File uploaded successfully");
+        ImportJob job = importJobService.submit(file, format.get(), idempotencyKey);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/socks/batch/" + job.getId()))
+                .body(ImportJobDto.from(job));
+    }
+
+    @PostMapping(value = "/batch", consumes = {"text/csv", "application/x-ndjson"})
+    @Operation(summary = "Потоковая загрузка партий носков", description = "Импортирует CSV или NDJSON прямо из тела запроса, не сохраняя его. Отвечает после завершения импорта.")
+    public ResponseEntity<ImportJobDto> uploadBatchStream(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            @Parameter(description = "Имя файла для журнала") @RequestParam(defaultValue = "request-body") String fileName,
+            @Parameter(description = "Ключ идемпотентности; повтор с тем же ключом продолжает прерванный импорт или не выполняется вовсе") @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            InputStream body) {
+        logger.info("Received request to stream batch: {} ({})", fileName, contentType);
+        BatchFormat format = BatchFormat.fromMediaType(contentType).orElseThrow();
+        return ResponseEntity.ok(ImportJobDto.from(importJobService.importNow(body, fileName, format, idempotencyKey)));
+    }
+
+    @GetMapping("/batch/{jobId}")
+    @Operation(summary = "Статус загрузки партий", description = "Возвращает прогресс и результат фонового импорта файла.")
+    public ResponseEntity<ImportJobDto> getBatchStatus(@Parameter(description = "Идентификатор задачи импорта") @PathVariable String jobId) {
+        return ResponseEntity.ok(ImportJobDto.from(importJobService.getJob(jobId)));
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String coding : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] parts = coding.split(";");
+            if (parts[0].trim().equals("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static int pageSize(int size) {
+        return Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
     }
 }
@@ -0,0 +1,36 @@
+package com.backspark.socks.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Several stock movements sent in one request.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkMovementRequest {
+
+    public static final int MAX_MOVEMENTS = 10_000;
+
+    public enum Mode {
+        /** All lines are applied in one transaction, or none of them. */
+        ATOMIC,
+        /** Every line is applied on its own; rejected lines do not affect the others. */
+        PER_LINE
+    }
+
+    @NotNull(message = "Mode cannot be null")
+    private Mode mode = Mode.ATOMIC;
+
+    @NotEmpty(message = "Movements cannot be empty")
+    @Size(max = MAX_MOVEMENTS, message = "At most " + MAX_MOVEMENTS + " movements are allowed per request")
+    private List<@Valid MovementDto> movements;
+}
@@ -0,0 +1,36 @@
+package com.backspark.socks.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk movement request with the result of every line, in request order.
+ */
+public record BulkMovementResultDto(
+        int applied,
+        int rejected,
+        List<LineResult> lines
+) {
+
+    public enum Status {
+        APPLIED,
+        REJECTED,
+        /** The line was valid, but the atomic request was rolled back because of another line. */
+        NOT_APPLIED
+    }
+
+    /**
+     * @param index position of the line in the request, starting at 0
+     */
+    public record LineResult(int index, Status status, String error) {
+    }
+
+    public static BulkMovementResultDto of(List<LineResult> lines) {
+        int applied = 0;
+        int rejected = 0;
+        for (LineResult line : lines) {
+            if (line.status() == Status.APPLIED) applied++;
+            if (line.status() == Status.REJECTED) rejected++;
+        }
+        return new BulkMovementResultDto(applied, rejected, lines);
+    }
+}
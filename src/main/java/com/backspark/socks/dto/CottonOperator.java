@@ -0,0 +1,31 @@
+package com.backspark.socks.dto;
+
+import com.backspark.socks.exception.InvalidRequestException;
+
+/**
+ * Comparison of the cotton part in stock queries.
+ */
+public enum CottonOperator {
+    MORE_THAN("moreThan"),
+    LESS_THAN("lessThan"),
+    EQUAL("equal");
+
+    private final String value;
+
+    CottonOperator(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public static CottonOperator fromValue(String value) {
+        for (CottonOperator operator : values()) {
+            if (operator.value.equals(value)) {
+                return operator;
+            }
+        }
+        throw new InvalidRequestException("Unknown operator: " + value + ". Use moreThan, lessThan or equal.");
+    }
+}
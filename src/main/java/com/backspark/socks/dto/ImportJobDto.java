@@ -0,0 +1,45 @@
+package com.backspark.socks.dto;
+
+import com.backspark.socks.service.batch.ImportJob;
+
+import java.time.Instant;
+
+/**
+ * Status of a batch upload returned by the API.
+ */
+public record ImportJobDto(
+        String id,
+        String fileName,
+        String importKey,
+        ImportJob.Status status,
+        long rowsParsed,
+        long rowsApplied,
+        long rowsRejected,
+        long rowsSkipped,
+        boolean alreadyImported,
+        double rowsPerSecond,
+        Instant createdAt,
+        Instant startedAt,
+        Instant finishedAt,
+        String error
+) {
+
+    public static ImportJobDto from(ImportJob job) {
+        return new ImportJobDto(
+                job.getId(),
+                job.getFileName(),
+                job.getImportKey(),
+                job.getStatus(),
+                job.getProgress().getRowsParsed(),
+                job.getProgress().getRowsApplied(),
+                job.getProgress().getRowsRejected(),
+                job.getProgress().getRowsSkipped(),
+                job.getProgress().isAlreadyImported(),
+                job.getRowsPerSecond(),
+                job.getCreatedAt(),
+                job.getStartedAt(),
+                job.getFinishedAt(),
+                job.getError()
+        );
+    }
+}
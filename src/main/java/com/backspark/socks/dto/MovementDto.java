@@ -0,0 +1,38 @@
+package com.backspark.socks.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of a bulk movement request: an income or an outcome of a sock item.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovementDto {
+
+    public enum Type {
+        INCOME,
+        OUTCOME
+    }
+
+    @NotNull(message = "Movement type cannot be null")
+    private Type type;
+
+    @NotBlank(message = "Color cannot be blank")
+    private String color;
+
+    @NotNull(message = "Cotton part cannot be null")
+    @Min(value = 0, message = "Cotton part must be at least 0")
+    @Max(value = 100, message = "Cotton part cannot exceed 100")
+    private Integer cottonPart;
+
+    @NotNull(message = "Quantity cannot be null")
+    @Min(value = 1, message = "Quantity must be at least 1")
+    private Integer quantity;
+}
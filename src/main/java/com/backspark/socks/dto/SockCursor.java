@@ -0,0 +1,28 @@
+package com.backspark.socks.dto;
+
+import com.backspark.socks.exception.InvalidRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in the keyset pagination of socks: the last (color, cottonPart) of the previous page.
+ * Sent to clients as an opaque URL-safe string.
+ */
+public record SockCursor(String color, int cottonPart) {
+
+    public String encode() {
+        String value = cottonPart + ":" + color;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SockCursor decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.indexOf(':');
+            return new SockCursor(value.substring(separator + 1), Integer.parseInt(value.substring(0, separator)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidRequestException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.backspark.socks.dto;
 
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -20,6 +21,7 @@ public class SockDto {
 
     @NotNull(message = "Cotton part cannot be null")
     @Min(value = 0, message = "Cotton part must be at least 0")
+    @Max(value = 100, message = "Cotton part cannot exceed 100")
     private Integer cottonPart;
 
     @NotNull(message = "Quantity cannot be null")
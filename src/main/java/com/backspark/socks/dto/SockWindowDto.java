@@ -0,0 +1,14 @@
+package com.backspark.socks.dto;
+
+import com.backspark.socks.model.Sock;
+
+import java.util.List;
+
+/**
+ * Page of the keyset pagination.
+ *
+ * @param content    socks of the page
+ * @param nextCursor cursor of the next page, {@code null} on the last page
+ */
+public record SockWindowDto(List<Sock> content, String nextCursor) {
+}
@@ -0,0 +1,13 @@
+package com.backspark.socks.dto;
+
+import java.time.Instant;
+
+/**
+ * Socks received and shipped in one time bucket, for one color and cotton band.
+ *
+ * @param bucketStart    start of the hour or day, in UTC
+ * @param cottonPartFrom lowest cotton part of the band
+ * @param cottonPartTo   highest cotton part of the band
+ */
+public record TurnoverDto(Instant bucketStart, String color, int cottonPartFrom, int cottonPartTo, long income, long outcome) {
+}
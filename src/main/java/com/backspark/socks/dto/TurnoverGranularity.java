@@ -0,0 +1,51 @@
+package com.backspark.socks.dto;
+
+import com.backspark.socks.exception.InvalidRequestException;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Bucket size of the turnover analytics, each backed by its own rollup table.
+ */
+public enum TurnoverGranularity {
+    HOUR("hour", ChronoUnit.HOURS, Duration.ofDays(31)),
+    DAY("day", ChronoUnit.DAYS, Duration.ofDays(366 * 3));
+
+    private final String value;
+    private final ChronoUnit unit;
+    private final Duration maxRange;
+
+    TurnoverGranularity(String value, ChronoUnit unit, Duration maxRange) {
+        this.value = value;
+        this.unit = unit;
+        this.maxRange = maxRange;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Unit the bucket start is truncated to, in UTC.
+     */
+    public ChronoUnit getUnit() {
+        return unit;
+    }
+
+    /**
+     * Longest period that can be queried at once, keeping the response bounded.
+     */
+    public Duration getMaxRange() {
+        return maxRange;
+    }
+
+    public static TurnoverGranularity fromValue(String value) {
+        for (TurnoverGranularity granularity : values()) {
+            if (granularity.value.equals(value)) {
+                return granularity;
+            }
+        }
+        throw new InvalidRequestException("Unknown granularity: " + value + ". Use hour or day.");
+    }
+}
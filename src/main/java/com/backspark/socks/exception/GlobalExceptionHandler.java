@@ -2,8 +2,13 @@ package com.backspark.socks.exception;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.data.mapping.PropertyReferenceException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -23,6 +28,20 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(apiError);
     }
 
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public ResponseEntity<ApiError> handleConcurrencyFailureException(ConcurrencyFailureException ex) {
+        logger.warn("Concurrent update conflict: {}", ex.getMessage());
+        ApiError apiError = new ApiError("The stock was changed by a concurrent request.", "Repeat the request.");
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(apiError);
+    }
+
+    @ExceptionHandler({CannotGetJdbcConnectionException.class, CannotCreateTransactionException.class})
+    public ResponseEntity<ApiError> handleConnectionUnavailable(Exception ex) {
+        logger.warn("No database connection available: {}", ex.getMessage());
+        ApiError apiError = new ApiError("The service is overloaded.", "Retry the request later.");
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").body(apiError);
+    }
+
     @ExceptionHandler(FileProcessingException.class)
     public ResponseEntity<ApiError> handleFileProcessingException(FileProcessingException ex) {
         logger.error("File processing error: {}", ex.getMessage(), ex);
@@ -30,6 +49,43 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(apiError);
     }
 
+    @ExceptionHandler(ImportRejectedException.class)
+    public ResponseEntity<ApiError> handleImportRejectedException(ImportRejectedException ex) {
+        logger.warn("Import rejected: {}", ex.getMessage());
+        ApiError apiError = new ApiError(ex.getMessage(), "Wait for running uploads to finish.");
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "30").body(apiError);
+    }
+
+    @ExceptionHandler(RequestThrottledException.class)
+    public ResponseEntity<ApiError> handleRequestThrottledException(RequestThrottledException ex) {
+        logger.debug("Request throttled: {}", ex.getMessage());
+        ApiError apiError = new ApiError(ex.getMessage(), "Retry the request later.");
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSeconds()))
+                .body(apiError);
+    }
+
+    @ExceptionHandler(ImportJobNotFoundException.class)
+    public ResponseEntity<ApiError> handleImportJobNotFoundException(ImportJobNotFoundException ex) {
+        logger.warn("Import job not found: {}", ex.getMessage());
+        ApiError apiError = new ApiError(ex.getMessage(), "Finished jobs are kept for a limited time.");
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(apiError);
+    }
+
+    @ExceptionHandler(InvalidRequestException.class)
+    public ResponseEntity<ApiError> handleInvalidRequestException(InvalidRequestException ex) {
+        logger.warn("Invalid request: {}", ex.getMessage());
+        ApiError apiError = new ApiError(ex.getMessage(), "Check the request parameters.");
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(apiError);
+    }
+
+    @ExceptionHandler(PropertyReferenceException.class)
+    public ResponseEntity<ApiError> handlePropertyReferenceException(PropertyReferenceException ex) {
+        logger.warn("Invalid sort property: {}", ex.getMessage());
+        ApiError apiError = new ApiError("Invalid sort property: " + ex.getPropertyName(), "Sort by one of: id, color, cottonPart, quantity.");
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(apiError);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ApiError> handleValidationException(MethodArgumentNotValidException ex) {
         String errorMessage = ex.getBindingResult().getAllErrors().stream()
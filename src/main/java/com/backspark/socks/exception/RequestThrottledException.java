@@ -0,0 +1,18 @@
+package com.backspark.socks.exception;
+
+/**
+ * The client sent too many requests, or too many requests of its kind are being handled.
+ */
+public class RequestThrottledException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public RequestThrottledException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
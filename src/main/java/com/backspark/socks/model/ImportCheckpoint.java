@@ -0,0 +1,42 @@
+package com.backspark.socks.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Progress of a batch upload identified by an import key: the content hash of the file or
+ * an idempotency key of the client. Advanced in the transaction of every committed chunk.
+ */
+@Entity
+@Table(name = "import_checkpoint")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportCheckpoint {
+
+    @Id
+    @Column(name = "import_key", length = 128)
+    private String importKey;
+
+    /**
+     * Number of leading rows of the file whose chunks are committed.
+     */
+    @Column(name = "rows_committed", nullable = false)
+    private Long rowsCommitted;
+
+    /**
+     * Whether the whole file is applied; a completed import is not applied again.
+     */
+    @Column(nullable = false)
+    private Boolean completed;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
@@ -0,0 +1,34 @@
+package com.backspark.socks.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Row of an all-or-nothing batch upload waiting for the final merge into the socks table.
+ * Written and merged with plain JDBC by {@link com.backspark.socks.repository.ImportStagingRepository}.
+ */
+@Entity
+@Table(name = "socks_import_staging", indexes = @Index(name = "idx_socks_import_staging_import_id", columnList = "import_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportStagingRow {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "import_id", nullable = false, length = 36)
+    private String importId;
+
+    @Column(nullable = false)
+    private String color;
+
+    @Column(name = "cotton_part", nullable = false)
+    private Integer cottonPart;
+
+    @Column(nullable = false)
+    private Integer quantity;
+}
@@ -0,0 +1,34 @@
+package com.backspark.socks.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Last journal segment of the write-behind ledger whose movements are stored in the socks table.
+ */
+@Entity
+@Table(name = "ledger_checkpoint")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerCheckpoint {
+
+    /**
+     * The table holds a single row with this identifier.
+     */
+    public static final long ID = 1L;
+
+    @Id
+    private Long id;
+
+    /**
+     * Sequence number of the last flushed journal segment.
+     */
+    @Column(name = "last_segment", nullable = false)
+    private Long lastSegment;
+}
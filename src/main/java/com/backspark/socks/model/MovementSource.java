@@ -0,0 +1,23 @@
+package com.backspark.socks.model;
+
+/**
+ * Origin of a stock movement in the movement history.
+ */
+public enum MovementSource {
+    /**
+     * Single income or outcome request.
+     */
+    REQUEST,
+    /**
+     * Atomic bulk movement request; lines of a per-line request are recorded as single requests.
+     */
+    BULK,
+    /**
+     * Batch upload from a file, one entry per item and committed chunk.
+     */
+    IMPORT,
+    /**
+     * Net change of an item flushed by the write-behind ledger.
+     */
+    WRITE_BEHIND
+}
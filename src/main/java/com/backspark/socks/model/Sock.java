@@ -8,17 +8,29 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 /**
- * Represents a sock item in the inventory.
+ * Represents a sock item in the inventory. Color and cotton part identify an item, so they form
+ * its natural id; items and natural id resolutions are kept in the second-level cache.
  */
 @Entity
-@Table(name = "socks")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Sock.CACHE_REGION)
+@NaturalIdCache(region = Sock.NATURAL_ID_CACHE_REGION)
+@Table(name = "socks", uniqueConstraints = @UniqueConstraint(
+        name = "uk_socks_color_cotton_part", columnNames = {"color", "cotton_part"}))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Sock {
 
+    public static final String CACHE_REGION = "socks";
+    public static final String NATURAL_ID_CACHE_REGION = "socks-natural-id";
+
     /**
      * Unique identifier of the sock.
      */
@@ -29,6 +41,7 @@ public class Sock {
     /**
      * Color of the sock.
      */
+    @NaturalId
     @Column(nullable = false)
     @NotBlank(message = "Color cannot be blank")
     private String color;
@@ -36,7 +49,8 @@ public class Sock {
     /**
      * Percentage of cotton in the sock.
      */
-    @Column(nullable = false)
+    @NaturalId
+    @Column(name = "cotton_part", nullable = false)
     @Min(value = 0, message = "Cotton part must be at least 0")
     @Max(value = 100, message = "Cotton part cannot exceed 100")
     private Integer cottonPart;
@@ -47,4 +61,16 @@ public class Sock {
     @Column(nullable = false)
     @Min(value = 0, message = "Quantity cannot be negative")
     private Integer quantity;
+
+    /**
+     * Optimistic lock version. Plain JDBC movements increment it as well, so a stale entity
+     * cannot overwrite them.
+     */
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    public Sock(Long id, String color, Integer cottonPart, Integer quantity) {
+        this(id, color, cottonPart, quantity, null);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.backspark.socks.model;
+
+import java.util.Comparator;
+
+/**
+ * Natural key of a sock item: its color and cotton percentage.
+ */
+public record SockKey(String color, int cottonPart) {
+
+    /**
+     * Order in which every writer of several items updates their rows, so that concurrent
+     * writers lock them in the same order and cannot deadlock each other.
+     */
+    public static final Comparator<SockKey> KEY_ORDER = Comparator.comparing(SockKey::color).thenComparingInt(SockKey::cottonPart);
+}
@@ -0,0 +1,42 @@
+package com.backspark.socks.repository;
+
+import com.backspark.socks.model.ImportCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+
+public interface ImportCheckpointRepository extends JpaRepository<ImportCheckpoint, String> {
+
+    /**
+     * Moves the checkpoint from {@code expected} to {@code rows} committed rows. Must run in the
+     * transaction of the chunk, so the chunk and its checkpoint commit together.
+     *
+     * @return 0 if another run of the same import moved it first or completed it
+     */
+    @Modifying
+    @Query("UPDATE ImportCheckpoint c SET c.rowsCommitted = :rows, c.updatedAt = :now " +
+            "WHERE c.importKey = :importKey AND c.rowsCommitted = :expected AND c.completed = false")
+    int advance(
+            @Param("importKey") String importKey,
+            @Param("expected") long expected,
+            @Param("rows") long rows,
+            @Param("now") Instant now
+    );
+
+    /**
+     * Marks the import as applied with {@code rows} rows in total.
+     *
+     * @return 0 if another run of the same import completed it first
+     */
+    @Modifying
+    @Query("UPDATE ImportCheckpoint c SET c.rowsCommitted = :rows, c.completed = true, c.updatedAt = :now " +
+            "WHERE c.importKey = :importKey AND c.completed = false")
+    int complete(
+            @Param("importKey") String importKey,
+            @Param("rows") long rows,
+            @Param("now") Instant now
+    );
+}
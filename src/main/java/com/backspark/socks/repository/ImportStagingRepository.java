@@ -0,0 +1,56 @@
+package com.backspark.socks.repository;
+
+import com.backspark.socks.model.SockKey;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Staging table of all-or-nothing batch uploads. Chunks are staged in short transactions and
+ * moved to the socks table by one set-based merge at the end.
+ */
+@Repository
+public class ImportStagingRepository {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO socks_import_staging (import_id, color, cotton_part, quantity) VALUES (?, ?, ?, ?)";
+
+    private static final String DELETE_SQL = "DELETE FROM socks_import_staging WHERE import_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SockCacheEviction cacheEviction;
+    private final String mergeSql;
+
+    public ImportStagingRepository(JdbcTemplate jdbcTemplate, SqlDialect sqlDialect, SockCacheEviction cacheEviction) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cacheEviction = cacheEviction;
+        this.mergeSql = sqlDialect.addStagedQuantities();
+    }
+
+    public void stage(String importId, Map<SockKey, Integer> quantities) {
+        if (quantities.isEmpty()) return;
+        jdbcTemplate.batchUpdate(INSERT_SQL, new ArrayList<>(quantities.entrySet()), quantities.size(), (ps, entry) -> {
+            ps.setString(1, importId);
+            ps.setString(2, entry.getKey().color());
+            ps.setInt(3, entry.getKey().cottonPart());
+            ps.setInt(4, entry.getValue());
+        });
+    }
+
+    /**
+     * Adds all staged quantities of the import to the socks table.
+     *
+     * @return number of sock items changed
+     */
+    public int merge(String importId) {
+        int merged = jdbcTemplate.update(mergeSql, importId);
+        cacheEviction.evictAll();
+        return merged;
+    }
+
+    public int delete(String importId) {
+        return jdbcTemplate.update(DELETE_SQL, importId);
+    }
+}
@@ -0,0 +1,7 @@
+package com.backspark.socks.repository;
+
+import com.backspark.socks.model.LedgerCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface LedgerCheckpointRepository extends JpaRepository<LedgerCheckpoint, Long> {
+}
@@ -0,0 +1,118 @@
+package com.backspark.socks.repository;
+
+import com.backspark.socks.dto.TurnoverDto;
+import com.backspark.socks.dto.TurnoverGranularity;
+import com.backspark.socks.model.MovementSource;
+import com.backspark.socks.model.SockKey;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Append-only history of stock movements with hourly and daily rollups.
+ * <p>
+ * Every append writes the movements with one batch insert and adds them to both rollups in the
+ * same transaction, so the rollups never lag behind the history. The caller's transaction already
+ * holds the row locks of the changed items and rollup rows are keyed by item, so the rollup upserts
+ * add no lock contention of their own. Turnover queries read the rollups only.
+ */
+@Repository
+public class MovementHistoryRepository {
+
+    private static final String HOURLY = "stock_movements_hourly";
+    private static final String DAILY = "stock_movements_daily";
+
+    private static final String INSERT_SQL = """
+            INSERT INTO stock_movements (occurred_at, movement_type, source, color, cotton_part, quantity)
+            VALUES (?, ?, ?, ?, ?, ?)""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String addToHourlySql;
+    private final String addToDailySql;
+
+    public MovementHistoryRepository(JdbcTemplate jdbcTemplate, SqlDialect sqlDialect) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.addToHourlySql = sqlDialect.addToRollup(HOURLY);
+        this.addToDailySql = sqlDialect.addToRollup(DAILY);
+    }
+
+    /**
+     * Records the movements at the current time. Must run in the transaction that changes the
+     * quantities. Zero quantities are skipped.
+     *
+     * @param incomes  socks received per item
+     * @param outcomes socks shipped per item
+     */
+    public void append(MovementSource source, Map<SockKey, Integer> incomes, Map<SockKey, Integer> outcomes) {
+        Instant now = Instant.now();
+        OffsetDateTime occurredAt = now.atOffset(ZoneOffset.UTC);
+        List<Object[]> movements = new ArrayList<>(incomes.size() + outcomes.size());
+        Map<SockKey, long[]> totals = new TreeMap<>(SockKey.KEY_ORDER);
+        incomes.forEach((key, quantity) -> {
+            if (quantity == 0) return;
+            movements.add(new Object[]{occurredAt, "INCOME", source.name(), key.color(), key.cottonPart(), quantity});
+            totals.computeIfAbsent(key, k -> new long[2])[0] += quantity;
+        });
+        outcomes.forEach((key, quantity) -> {
+            if (quantity == 0) return;
+            movements.add(new Object[]{occurredAt, "OUTCOME", source.name(), key.color(), key.cottonPart(), quantity});
+            totals.computeIfAbsent(key, k -> new long[2])[1] += quantity;
+        });
+        if (movements.isEmpty()) return;
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, movements);
+        addToRollup(addToHourlySql, now.truncatedTo(ChronoUnit.HOURS), totals);
+        addToRollup(addToDailySql, now.truncatedTo(ChronoUnit.DAYS), totals);
+    }
+
+    /**
+     * Sums the rollup of the granularity over {@code [from, to)}, grouping cotton parts into
+     * bands of {@code cottonBand} percent.
+     *
+     * @param color {@code null} for all colors
+     * @return buckets in (bucketStart, color, cottonPartFrom) order, empty buckets are omitted
+     */
+    public List<TurnoverDto> turnover(TurnoverGranularity granularity, Instant from, Instant to, String color, int cottonBand) {
+        String table = granularity == TurnoverGranularity.HOUR ? HOURLY : DAILY;
+        // The band width is a validated int; as a literal the grouping expression matches the selected one
+        String band = "(cotton_part / " + cottonBand + ") * " + cottonBand;
+        StringBuilder sql = new StringBuilder("SELECT bucket_start, color, ").append(band)
+                .append(" AS band, SUM(income), SUM(outcome) FROM ").append(table)
+                .append(" WHERE bucket_start >= ? AND bucket_start < ?");
+        List<Object> args = new ArrayList<>(3);
+        args.add(from.atOffset(ZoneOffset.UTC));
+        args.add(to.atOffset(ZoneOffset.UTC));
+        if (color != null) {
+            sql.append(" AND color = ?");
+            args.add(color);
+        }
+        sql.append(" GROUP BY bucket_start, color, ").append(band)
+                .append(" ORDER BY bucket_start, color, band");
+
+        return jdbcTemplate.query(sql.toString(), (resultSet, rowNum) -> {
+            int bandStart = resultSet.getInt(3);
+            return new TurnoverDto(
+                    resultSet.getObject(1, OffsetDateTime.class).toInstant(),
+                    resultSet.getString(2),
+                    bandStart,
+                    Math.min(bandStart + cottonBand - 1, 100),
+                    resultSet.getLong(4),
+                    resultSet.getLong(5));
+        }, args.toArray());
+    }
+
+    private void addToRollup(String sql, Instant bucketStart, Map<SockKey, long[]> totals) {
+        OffsetDateTime bucket = bucketStart.atOffset(ZoneOffset.UTC);
+        List<Object[]> rows = new ArrayList<>(totals.size());
+        totals.forEach((key, total) -> rows.add(new Object[]{bucket, key.color(), key.cottonPart(), total[0], total[1]}));
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+}
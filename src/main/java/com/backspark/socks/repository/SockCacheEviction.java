@@ -0,0 +1,125 @@
+package com.backspark.socks.repository;
+
+import com.backspark.socks.model.Sock;
+import com.backspark.socks.model.SockKey;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.cache.spi.access.NaturalIdDataAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the second-level cache of {@link Sock} consistent with writes that bypass Hibernate.
+ * <p>
+ * Plain JDBC updates do not touch the cache, so the changed items are evicted right away and
+ * once more after the surrounding transaction completes: a concurrent reader could put the
+ * old row back in between. Ids are taken from the natural-id region without a query; only keys
+ * missing there are resolved, all of them with one select.
+ */
+@Component
+public class SockCacheEviction {
+
+    // Above this many keys resolving every id costs more than refilling the region
+    private static final int MAX_EVICTED_KEYS = 64;
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityPersister persister;
+    private final boolean enabled;
+
+    public SockCacheEviction(EntityManagerFactory entityManagerFactory, JdbcTemplate jdbcTemplate) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.jdbcTemplate = jdbcTemplate;
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.persister = sessionFactory.getMappingMetamodel().getEntityDescriptor(Sock.class);
+        this.enabled = sessionFactory.getSessionFactoryOptions().isSecondLevelCacheEnabled();
+    }
+
+    public void evict(SockKey key) {
+        evict(List.of(key));
+    }
+
+    public void evict(Collection<SockKey> keys) {
+        if (!enabled || keys.isEmpty()) return;
+        if (keys.size() > MAX_EVICTED_KEYS) {
+            evictAll();
+            return;
+        }
+        List<Object> ids = new ArrayList<>(keys.size());
+        List<SockKey> unresolved = new ArrayList<>();
+        NaturalIdDataAccess naturalIds = persister.getNaturalIdCacheAccessStrategy();
+        withSession(session -> {
+            for (SockKey key : keys) {
+                Object naturalId = persister.getNaturalIdMapping()
+                        .normalizeInput(Map.of("color", key.color(), "cottonPart", key.cottonPart()));
+                Object id = naturalIds.get(session, naturalIds.generateCacheKey(naturalId, persister, session));
+                if (id != null) {
+                    ids.add(id);
+                } else {
+                    unresolved.add(key);
+                }
+            }
+        });
+        // Loading an item also caches its natural id, so a miss there rarely has a cached entity
+        if (!unresolved.isEmpty()) {
+            ids.addAll(selectIds(unresolved));
+        }
+        // The natural id of a row never changes, only its entity data is evicted
+        runNowAndAfterCompletion(() -> ids.forEach(id -> entityManagerFactory.getCache().evict(Sock.class, id)));
+    }
+
+    /**
+     * Empties the whole region, e.g. after a set-based merge of an import.
+     */
+    public void evictAll() {
+        if (!enabled) return;
+        runNowAndAfterCompletion(() -> entityManagerFactory.getCache().evict(Sock.class));
+    }
+
+    private List<Long> selectIds(List<SockKey> keys) {
+        StringJoiner rows = new StringJoiner(", ", "SELECT id FROM socks WHERE (color, cotton_part) IN (", ")");
+        Object[] args = new Object[keys.size() * 2];
+        for (int i = 0; i < keys.size(); i++) {
+            rows.add("(?, ?)");
+            args[i * 2] = keys.get(i).color();
+            args[i * 2 + 1] = keys.get(i).cottonPart();
+        }
+        return jdbcTemplate.queryForList(rows.toString(), Long.class, args);
+    }
+
+    private void runNowAndAfterCompletion(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        }
+    }
+
+    private void withSession(Consumer<SharedSessionContractImplementor> action) {
+        EntityManager transactional = EntityManagerFactoryUtils.getTransactionalEntityManager(entityManagerFactory);
+        if (transactional != null) {
+            action.accept(transactional.unwrap(SharedSessionContractImplementor.class));
+            return;
+        }
+        try (EntityManager entityManager = entityManagerFactory.createEntityManager()) {
+            action.accept(entityManager.unwrap(SharedSessionContractImplementor.class));
+        }
+    }
+}
@@ -5,15 +5,13 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
-import java.util.Optional;
-
-public interface SockRepository extends JpaRepository<Sock, Long> {
-    Optional<Sock> findByColorAndCottonPart(String color, Integer cottonPart);
 
+public interface SockRepository extends JpaRepository<Sock, Long>, JpaSpecificationExecutor<Sock>, SockRepositoryCustom {
     List<Sock> findByColorAndCottonPartGreaterThan(String color, Integer cottonPart);
 
     List<Sock> findByColorAndCottonPartLessThan(String color, Integer cottonPart);
@@ -0,0 +1,98 @@
+package com.backspark.socks.repository;
+
+import com.backspark.socks.model.Sock;
+import com.backspark.socks.model.SockKey;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Set-based operations of {@link SockRepository} that derived queries cannot express.
+ */
+public interface SockRepositoryCustom {
+
+    /**
+     * Loads an item by its natural id, served from the second-level cache when possible.
+     */
+    Optional<Sock> findByColorAndCottonPart(String color, Integer cottonPart);
+
+    boolean existsByColorAndCottonPart(String color, Integer cottonPart);
+
+    /**
+     * Atomically adds socks to an existing item.
+     *
+     * @return number of updated rows, 0 if the item does not exist
+     */
+    int increaseQuantity(String color, Integer cottonPart, Integer quantity);
+
+    /**
+     * Atomically takes socks from an item if there are enough of them.
+     *
+     * @return number of updated rows, 0 if the item does not exist or the stock is insufficient
+     */
+    int decreaseQuantity(String color, Integer cottonPart, Integer quantity);
+
+    /**
+     * Adds the given quantities to the stock with multi-row upserts, creating missing items.
+     * Every key must be present only once.
+     *
+     * @return number of statements executed
+     */
+    int addQuantities(Map<SockKey, Integer> quantities);
+
+    /**
+     * Adds signed quantity changes to existing items with one batch of updates, without checking
+     * the stock and without creating missing items. For negative changes the caller must know that
+     * the items hold enough socks; the upsert of {@link #addQuantities} cannot take them, because
+     * PostgreSQL checks the quantity constraint on the proposed insert row before the conflict.
+     *
+     * @return keys that were not changed because the item is missing
+     */
+    Set<SockKey> adjustQuantities(Map<SockKey, Integer> deltas);
+
+    /**
+     * Removes the given quantities from the stock with one batch of conditional updates.
+     * An item is only changed if it has at least the requested quantity.
+     *
+     * @return keys that were not changed because the item is missing or has too few socks
+     */
+    Set<SockKey> removeQuantities(Map<SockKey, Integer> quantities);
+
+    /**
+     * Applies signed quantity changes in the iteration order of the map: consecutive positive changes
+     * run as multi-row upserts, consecutive negative ones as a batch of conditional updates. Rows are
+     * therefore locked in map order, so callers passing maps sorted the same way cannot deadlock each
+     * other. After a failed decrease the remaining decreases are still checked, incomes are skipped.
+     *
+     * @return keys whose decrease failed because the item is missing or has too few socks
+     */
+    Set<SockKey> applyQuantities(Map<SockKey, Integer> deltas);
+
+    /**
+     * Sums the quantity of matching socks in the database.
+     *
+     * @return total quantity, 0 if nothing matches
+     */
+    long sumQuantity(Specification<Sock> specification);
+
+    /**
+     * Passes matching items in (color, cottonPart) order to the handler while they are read from
+     * a database cursor, {@code socks.export.fetch-size} rows per round trip. No item is kept
+     * after the handler returns.
+     *
+     * @return number of items passed to the handler
+     */
+    long exportSocks(String color, Integer cottonPartMin, Integer cottonPartMax, SockExportHandler handler) throws IOException;
+
+    /**
+     * Receives the rows of {@link #exportSocks}.
+     */
+    @FunctionalInterface
+    interface SockExportHandler {
+
+        void onSock(String color, int cottonPart, int quantity) throws IOException;
+    }
+}
@@ -0,0 +1,251 @@
+package com.backspark.socks.repository;
+
+import com.backspark.socks.config.SocksProperties;
+import com.backspark.socks.model.Sock;
+import com.backspark.socks.model.SockKey;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.Session;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Implementation of {@link SockRepositoryCustom}: upserts go through plain JDBC, aggregates
+ * through the Criteria API and single items are looked up by natural id. JDBC writes evict the
+ * changed items from the second-level cache, JPQL bulk updates would drop the whole region.
+ */
+public class SockRepositoryImpl implements SockRepositoryCustom {
+
+    private static final String INCREASE_SQL =
+            "UPDATE socks SET quantity = quantity + ?, version = version + 1 WHERE color = ? AND cotton_part = ?";
+
+    private static final String DECREASE_SQL =
+            "UPDATE socks SET quantity = quantity - ?, version = version + 1 WHERE color = ? AND cotton_part = ? AND quantity >= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final SqlDialect sqlDialect;
+    private final SockCacheEviction cacheEviction;
+    private final int chunkSize;
+    private final String fullChunkSql;
+    private final int exportFetchSize;
+
+    public SockRepositoryImpl(JdbcTemplate jdbcTemplate, EntityManager entityManager, SqlDialect sqlDialect,
+                              SockCacheEviction cacheEviction, SocksProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.sqlDialect = sqlDialect;
+        this.cacheEviction = cacheEviction;
+        this.chunkSize = properties.getBatch().getChunkSize();
+        this.fullChunkSql = sqlDialect.addQuantities(chunkSize);
+        this.exportFetchSize = properties.getExport().getFetchSize();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Sock> findByColorAndCottonPart(String color, Integer cottonPart) {
+        return entityManager.unwrap(Session.class)
+                .byNaturalId(Sock.class)
+                .using("color", color)
+                .using("cottonPart", cottonPart)
+                .loadOptional();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean existsByColorAndCottonPart(String color, Integer cottonPart) {
+        return findByColorAndCottonPart(color, cottonPart).isPresent();
+    }
+
+    @Override
+    @Transactional
+    public int increaseQuantity(String color, Integer cottonPart, Integer quantity) {
+        int updated = jdbcTemplate.update(INCREASE_SQL, quantity, color, cottonPart);
+        if (updated > 0) {
+            cacheEviction.evict(new SockKey(color, cottonPart));
+        }
+        return updated;
+    }
+
+    @Override
+    @Transactional
+    public int decreaseQuantity(String color, Integer cottonPart, Integer quantity) {
+        int updated = jdbcTemplate.update(DECREASE_SQL, quantity, color, cottonPart, quantity);
+        if (updated > 0) {
+            cacheEviction.evict(new SockKey(color, cottonPart));
+        }
+        return updated;
+    }
+
+    @Override
+    public int addQuantities(Map<SockKey, Integer> quantities) {
+        int statements = 0;
+        Object[] args = new Object[Math.min(quantities.size(), chunkSize) * 3];
+        int rows = 0;
+        for (Map.Entry<SockKey, Integer> entry : quantities.entrySet()) {
+            args[rows * 3] = entry.getKey().color();
+            args[rows * 3 + 1] = entry.getKey().cottonPart();
+            args[rows * 3 + 2] = entry.getValue();
+            if (++rows == chunkSize) {
+                jdbcTemplate.update(fullChunkSql, args);
+                statements++;
+                rows = 0;
+            }
+        }
+        if (rows > 0) {
+            Object[] tail = new Object[rows * 3];
+            System.arraycopy(args, 0, tail, 0, tail.length);
+            jdbcTemplate.update(sqlDialect.addQuantities(rows), tail);
+            statements++;
+        }
+        cacheEviction.evict(quantities.keySet());
+        return statements;
+    }
+
+    @Override
+    public Set<SockKey> adjustQuantities(Map<SockKey, Integer> deltas) {
+        List<SockKey> keys = new ArrayList<>(deltas.keySet());
+        List<Object[]> args = new ArrayList<>(keys.size());
+        for (SockKey key : keys) {
+            args.add(new Object[]{deltas.get(key), key.color(), key.cottonPart()});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(INCREASE_SQL, args);
+        Set<SockKey> missing = new HashSet<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(keys.get(i));
+            }
+        }
+        List<SockKey> changed = new ArrayList<>(keys);
+        changed.removeAll(missing);
+        cacheEviction.evict(changed);
+        return missing;
+    }
+
+    @Override
+    public Set<SockKey> removeQuantities(Map<SockKey, Integer> quantities) {
+        List<SockKey> keys = new ArrayList<>(quantities.keySet());
+        List<Object[]> args = new ArrayList<>(keys.size());
+        for (SockKey key : keys) {
+            int quantity = quantities.get(key);
+            args.add(new Object[]{quantity, key.color(), key.cottonPart(), quantity});
+        }
+        int[] updated = jdbcTemplate.batchUpdate(DECREASE_SQL, args);
+        Set<SockKey> failed = new HashSet<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                failed.add(keys.get(i));
+            }
+        }
+        List<SockKey> changed = new ArrayList<>(keys);
+        changed.removeAll(failed);
+        cacheEviction.evict(changed);
+        return failed;
+    }
+
+    @Override
+    public Set<SockKey> applyQuantities(Map<SockKey, Integer> deltas) {
+        Set<SockKey> failed = new HashSet<>();
+        Map<SockKey, Integer> run = new LinkedHashMap<>();
+        boolean income = false;
+        for (Map.Entry<SockKey, Integer> entry : deltas.entrySet()) {
+            int delta = entry.getValue();
+            if (delta == 0) {
+                continue;
+            }
+            if (!run.isEmpty() && income != delta > 0) {
+                applyRun(run, income, failed);
+                run.clear();
+            }
+            income = delta > 0;
+            run.put(entry.getKey(), Math.abs(delta));
+        }
+        if (!run.isEmpty()) {
+            applyRun(run, income, failed);
+        }
+        return failed;
+    }
+
+    private void applyRun(Map<SockKey, Integer> run, boolean income, Set<SockKey> failed) {
+        if (!income) {
+            failed.addAll(removeQuantities(run));
+        } else if (failed.isEmpty()) {
+            addQuantities(run);
+        }
+    }
+
+    @Override
+    public long sumQuantity(Specification<Sock> specification) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Sock> root = query.from(Sock.class);
+        query.select(cb.coalesce(cb.sumAsLong(root.<Integer>get("quantity")), 0L));
+        Predicate predicate = specification.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    // Read-only transaction: PostgreSQL only honours the fetch size with auto-commit off
+    @Override
+    @Transactional(readOnly = true)
+    public long exportSocks(String color, Integer cottonPartMin, Integer cottonPartMax, SockExportHandler handler) throws IOException {
+        StringBuilder sql = new StringBuilder("SELECT color, cotton_part, quantity FROM socks WHERE 1 = 1");
+        List<Object> args = new ArrayList<>(3);
+        if (color != null) {
+            sql.append(" AND color = ?");
+            args.add(color);
+        }
+        if (cottonPartMin != null) {
+            sql.append(" AND cotton_part >= ?");
+            args.add(cottonPartMin);
+        }
+        if (cottonPartMax != null) {
+            sql.append(" AND cotton_part <= ?");
+            args.add(cottonPartMax);
+        }
+        // Follows the unique (color, cotton_part) index, so no sort step buffers the result
+        sql.append(" ORDER BY color, cotton_part");
+
+        long[] rows = {0};
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql.toString(),
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(exportFetchSize);
+                for (int i = 0; i < args.size(); i++) {
+                    statement.setObject(i + 1, args.get(i));
+                }
+                return statement;
+            }, (RowCallbackHandler) resultSet -> {
+                try {
+                    handler.onSock(resultSet.getString(1), resultSet.getInt(2), resultSet.getInt(3));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+}
@@ -0,0 +1,53 @@
+package com.backspark.socks.repository;
+
+import com.backspark.socks.dto.CottonOperator;
+import com.backspark.socks.dto.SockCursor;
+import com.backspark.socks.model.Sock;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Filters of the sock listing. Every method returns {@code null} for an absent filter, which
+ * {@link Specification#where} treats as "no restriction".
+ */
+public final class SockSpecifications {
+
+    private SockSpecifications() {
+    }
+
+    public static Specification<Sock> filter(String color, Integer cottonPartMin, Integer cottonPartMax) {
+        return Specification.where(hasColor(color)).and(cottonPartBetween(cottonPartMin, cottonPartMax));
+    }
+
+    public static Specification<Sock> hasColor(String color) {
+        if (color == null) return null;
+        return (root, query, cb) -> cb.equal(root.get("color"), color);
+    }
+
+    public static Specification<Sock> cottonPartBetween(Integer min, Integer max) {
+        if (min == null && max == null) return null;
+        if (min == null) return (root, query, cb) -> cb.le(root.<Integer>get("cottonPart"), max);
+        if (max == null) return (root, query, cb) -> cb.ge(root.<Integer>get("cottonPart"), min);
+        return (root, query, cb) -> cb.between(root.<Integer>get("cottonPart"), min, max);
+    }
+
+    public static Specification<Sock> cottonPart(CottonOperator operator, Integer cottonPart) {
+        if (operator == null) return null;
+        return switch (operator) {
+            case MORE_THAN -> (root, query, cb) -> cb.gt(root.<Integer>get("cottonPart"), cottonPart);
+            case LESS_THAN -> (root, query, cb) -> cb.lt(root.<Integer>get("cottonPart"), cottonPart);
+            case EQUAL -> (root, query, cb) -> cb.equal(root.get("cottonPart"), cottonPart);
+        };
+    }
+
+    /**
+     * Items strictly after the cursor in (color, cottonPart) order.
+     */
+    public static Specification<Sock> after(SockCursor cursor) {
+        if (cursor == null) return null;
+        return (root, query, cb) -> cb.or(
+                cb.greaterThan(root.<String>get("color"), cursor.color()),
+                cb.and(
+                        cb.equal(root.get("color"), cursor.color()),
+                        cb.greaterThan(root.<Integer>get("cottonPart"), cursor.cottonPart())));
+    }
+}
@@ -0,0 +1,94 @@
+package com.backspark.socks.repository;
+
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+
+/**
+ * Upsert statements of the supported databases: stock quantities and the rollups of the movement history.
+ * <p>
+ * PostgreSQL adds to existing rows with {@code INSERT ... ON CONFLICT}, which is also safe against
+ * concurrent inserts of the same item. H2, used for embedded runs and tests, has no
+ * {@code ON CONFLICT DO UPDATE} even in PostgreSQL mode, so it gets the equivalent {@code MERGE}.
+ */
+public enum SqlDialect {
+    POSTGRESQL,
+    H2;
+
+    private static final String ON_CONFLICT_ADD =
+            " ON CONFLICT (color, cotton_part) DO UPDATE SET quantity = socks.quantity + EXCLUDED.quantity, version = socks.version + 1";
+    private static final String MERGE_ADD = """
+             v ON s.color = v.color AND s.cotton_part = v.cotton_part
+            WHEN MATCHED THEN UPDATE SET quantity = s.quantity + v.quantity, version = s.version + 1
+            WHEN NOT MATCHED THEN INSERT (color, cotton_part, quantity, version) VALUES (v.color, v.cotton_part, v.quantity, 0)""";
+    private static final String STAGED_QUANTITIES = """
+            SELECT color, cotton_part, SUM(quantity) AS quantity, 0 AS version
+            FROM socks_import_staging
+            WHERE import_id = ?
+            GROUP BY color, cotton_part""";
+
+    public static SqlDialect detect(DataSource dataSource) {
+        String product;
+        try {
+            product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException e) {
+            throw new IllegalStateException("Cannot detect the database", e);
+        }
+        return switch (product) {
+            case "PostgreSQL" -> POSTGRESQL;
+            case "H2" -> H2;
+            default -> throw new IllegalStateException("Unsupported database: " + product);
+        };
+    }
+
+    /**
+     * Statement adding {@code rows} (color, cotton_part, quantity) parameter triples to the stock,
+     * creating missing items. Every item must be present only once.
+     */
+    public String addQuantities(int rows) {
+        String row = this == H2 ? "(CAST(? AS VARCHAR), CAST(? AS INTEGER), CAST(? AS INTEGER))" : "(?, ?, ?, 0)";
+        StringBuilder values = new StringBuilder(rows * (row.length() + 2));
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) values.append(", ");
+            values.append(row);
+        }
+        return switch (this) {
+            case POSTGRESQL -> "INSERT INTO socks (color, cotton_part, quantity, version) VALUES " + values + ON_CONFLICT_ADD;
+            case H2 -> "MERGE INTO socks s USING (SELECT * FROM (VALUES " + values + ") AS t(color, cotton_part, quantity))" + MERGE_ADD;
+        };
+    }
+
+    /**
+     * Statement adding one (bucket_start, color, cotton_part, income, outcome) parameter row to a
+     * rollup table of the movement history, creating the bucket if it is missing.
+     */
+    public String addToRollup(String table) {
+        return switch (this) {
+            case POSTGRESQL -> "INSERT INTO " + table + " (bucket_start, color, cotton_part, income, outcome) VALUES (?, ?, ?, ?, ?)"
+                    + " ON CONFLICT (bucket_start, color, cotton_part) DO UPDATE"
+                    + " SET income = " + table + ".income + EXCLUDED.income, outcome = " + table + ".outcome + EXCLUDED.outcome";
+            case H2 -> "MERGE INTO " + table + " r USING (SELECT * FROM (VALUES (CAST(? AS TIMESTAMP WITH TIME ZONE),"
+                    + " CAST(? AS VARCHAR), CAST(? AS INTEGER), CAST(? AS BIGINT), CAST(? AS BIGINT)))"
+                    + " AS t(bucket_start, color, cotton_part, income, outcome)) v"
+                    + " ON r.bucket_start = v.bucket_start AND r.color = v.color AND r.cotton_part = v.cotton_part"
+                    + " WHEN MATCHED THEN UPDATE SET income = r.income + v.income, outcome = r.outcome + v.outcome"
+                    + " WHEN NOT MATCHED THEN INSERT (bucket_start, color, cotton_part, income, outcome)"
+                    + " VALUES (v.bucket_start, v.color, v.cotton_part, v.income, v.outcome)";
+        };
+    }
+
+    /**
+     * Statement adding the summed staged quantities of one import, its only parameter, to the stock.
+     * Rows are merged in {@link com.backspark.socks.model.SockKey#KEY_ORDER}: byte order of the
+     * colors on PostgreSQL, whose default collation would sort them differently from Java.
+     */
+    public String addStagedQuantities() {
+        return switch (this) {
+            case POSTGRESQL -> "INSERT INTO socks (color, cotton_part, quantity, version)\n" + STAGED_QUANTITIES
+                    + "\nORDER BY color COLLATE \"C\", cotton_part" + ON_CONFLICT_ADD;
+            case H2 -> "MERGE INTO socks s USING (" + STAGED_QUANTITIES + "\nORDER BY color, cotton_part)" + MERGE_ADD;
+        };
+    }
+}
@@ -0,0 +1,88 @@
+package com.backspark.socks.service;
+
+import com.backspark.socks.config.SocksProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Re-runs a stock write that lost a race with a concurrent one: an optimistic lock conflict,
+ * a deadlock or lock timeout, or the duplicate key of a concurrent first income.
+ * <p>
+ * Attempts are bounded and separated by exponential backoff with full jitter, so contending
+ * requests spread out instead of colliding again. Inside a surrounding transaction the write
+ * runs once, as that transaction is already marked for rollback. {@code socks.movements.retries}
+ * counts the extra attempts.
+ */
+@Component
+public class ConcurrencyRetry {
+
+    public static final String RETRIES = "socks.movements.retries";
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyRetry.class);
+
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final Counter retries;
+
+    public ConcurrencyRetry(SocksProperties properties, MeterRegistry meterRegistry) {
+        SocksProperties.Retry settings = properties.getRetry();
+        this.maxAttempts = Math.max(1, settings.getMaxAttempts());
+        this.initialBackoffNanos = settings.getInitialBackoff().toNanos();
+        this.maxBackoffNanos = settings.getMaxBackoff().toNanos();
+        this.retries = Counter.builder(RETRIES)
+                .description("Stock writes repeated after a concurrency conflict")
+                .register(meterRegistry);
+    }
+
+    <T> T call(Supplier<T> action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return action.get();
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (ConcurrencyFailureException | DuplicateKeyException e) {
+                if (attempt >= maxAttempts || !backoff(attempt)) {
+                    throw e;
+                }
+                retries.increment();
+                logger.debug("event=retry attempt={} cause={}", attempt, e.getClass().getSimpleName());
+            }
+        }
+    }
+
+    void run(Runnable action) {
+        call(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * @return false if the thread was interrupted while waiting
+     */
+    private boolean backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt - 1, 30));
+        if (ceiling <= 0) {
+            return true;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
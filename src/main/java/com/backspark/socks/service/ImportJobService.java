@@ -0,0 +1,288 @@
+package com.backspark.socks.service;
+
+import com.backspark.socks.config.SocksProperties;
+import com.backspark.socks.exception.FileProcessingException;
+import com.backspark.socks.exception.ImportJobNotFoundException;
+import com.backspark.socks.exception.ImportRejectedException;
+import com.backspark.socks.exception.InvalidRequestException;
+import com.backspark.socks.model.ImportCheckpoint;
+import com.backspark.socks.repository.ImportCheckpointRepository;
+import com.backspark.socks.service.batch.BatchFormat;
+import com.backspark.socks.service.batch.ImportJob;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs batch uploads in the background.
+ * <p>
+ * The upload is saved to a temporary file and the request returns at once with a job id.
+ * At most {@code max-concurrent-imports} jobs run at a time, each holding one database
+ * connection, so imports cannot take the whole pool from income and outcome requests.
+ * Up to {@code max-queued-imports} more jobs wait; further uploads are rejected.
+ * <p>
+ * Text formats can also be imported straight from the request body with {@link #importNow},
+ * which runs on the calling thread under the same concurrency limit.
+ * <p>
+ * Every upload has an import key: the idempotency key sent by the client or, for stored files,
+ * the SHA-256 of the content. Submitting a completed key again returns a finished job without
+ * reading the file, submitting a key that is running returns the running job, and a key that
+ * failed half way resumes after its last committed chunk.
+ */
+@Service
+public class ImportJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportJobService.class);
+
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 100;
+
+    private final SockService sockService;
+    private final ImportCheckpointRepository checkpointRepository;
+    private final ExecutorService executor;
+    private final Semaphore running;
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final int maxAdmitted;
+    private final Duration retention;
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, ImportJob> activeByKey = new ConcurrentHashMap<>();
+
+    public ImportJobService(SockService sockService, ImportCheckpointRepository checkpointRepository, SocksProperties properties) {
+        SocksProperties.Batch settings = properties.getBatch();
+        this.sockService = sockService;
+        this.checkpointRepository = checkpointRepository;
+        this.running = new Semaphore(settings.getMaxConcurrentImports());
+        this.maxAdmitted = settings.getMaxConcurrentImports() + settings.getMaxQueuedImports();
+        this.retention = settings.getJobRetention();
+        this.executor = createExecutor(settings);
+    }
+
+    /**
+     * @param idempotencyKey key chosen by the client, {@code null} to key the upload by its content
+     */
+    public ImportJob submit(MultipartFile file, BatchFormat format, String idempotencyKey) {
+        removeExpiredJobs();
+        String clientKey = clientKey(idempotencyKey);
+        if (clientKey != null) {
+            ImportJob existing = existingJob(clientKey, file.getOriginalFilename());
+            if (existing != null) return existing;
+        }
+        if (admitted.incrementAndGet() > maxAdmitted) {
+            admitted.decrementAndGet();
+            throw new ImportRejectedException("Too many batch uploads in progress, try again later.");
+        }
+
+        Path tempFile;
+        String importKey;
+        try {
+            tempFile = Files.createTempFile("socks-import-", ".upload");
+            if (clientKey != null) {
+                file.transferTo(tempFile);
+                importKey = clientKey;
+            } else {
+                importKey = storeHashed(file, tempFile);
+            }
+        } catch (IOException e) {
+            admitted.decrementAndGet();
+            throw new FileProcessingException("Failed to store the uploaded file", e);
+        }
+
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), file.getOriginalFilename(), importKey);
+        ImportJob existing = clientKey == null ? existingJob(importKey, job.getFileName()) : null;
+        if (existing == null) {
+            existing = activeByKey.putIfAbsent(importKey, job);
+        }
+        if (existing != null) {
+            admitted.decrementAndGet();
+            deleteQuietly(tempFile);
+            return existing;
+        }
+        jobs.put(job.getId(), job);
+        executor.execute(() -> run(job, format, tempFile));
+        logger.info("Queued import job {} for file: {}", job.getId(), job.getFileName());
+        return job;
+    }
+
+    /**
+     * Imports the stream on the calling thread, so it is read while it arrives and never
+     * stored. Rejected at once when all import slots are busy. A stream cannot be hashed
+     * before it is read, so only an upload with an idempotency key is deduplicated and resumed.
+     */
+    public ImportJob importNow(InputStream inputStream, String fileName, BatchFormat format, String idempotencyKey) {
+        removeExpiredJobs();
+        String importKey = clientKey(idempotencyKey);
+        if (importKey != null) {
+            ImportJob existing = existingJob(importKey, fileName);
+            if (existing != null) return existing;
+        }
+        if (!running.tryAcquire()) {
+            throw new ImportRejectedException("Too many batch uploads in progress, try again later.");
+        }
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), fileName, importKey);
+        try {
+            if (importKey != null) {
+                ImportJob existing = activeByKey.putIfAbsent(importKey, job);
+                if (existing != null) return existing;
+            }
+            jobs.put(job.getId(), job);
+            job.started();
+            try {
+                sockService.importBatch(inputStream, fileName, format, importKey, job.getProgress());
+            } catch (RuntimeException e) {
+                job.failed(e.getMessage());
+                throw e;
+            }
+            job.succeeded();
+            logger.info("Import job {} finished: {} rows in {} rows/s",
+                    job.getId(), job.getProgress().getRowsApplied(), Math.round(job.getRowsPerSecond()));
+            return job;
+        } finally {
+            if (importKey != null) {
+                activeByKey.remove(importKey, job);
+            }
+            running.release();
+        }
+    }
+
+    public ImportJob getJob(String id) {
+        ImportJob job = jobs.get(id);
+        if (job == null) {
+            throw new ImportJobNotFoundException("Import job not found: " + id);
+        }
+        return job;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void run(ImportJob job, BatchFormat format, Path file) {
+        boolean failed = true;
+        String error = null;
+        try {
+            running.acquire();
+            try {
+                job.started();
+                try (InputStream inputStream = Files.newInputStream(file)) {
+                    sockService.importBatch(inputStream, job.getFileName(), format, job.getImportKey(), job.getProgress());
+                }
+                failed = false;
+            } finally {
+                running.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "Import was interrupted";
+        } catch (Exception e) {
+            logger.error("Import job {} failed", job.getId(), e);
+            error = e.getMessage();
+        } finally {
+            activeByKey.remove(job.getImportKey(), job);
+            admitted.decrementAndGet();
+            deleteQuietly(file);
+        }
+
+        // Only after the slot is free, so a client that sees the job finished can upload again at once
+        if (failed) {
+            job.failed(error);
+        } else {
+            job.succeeded();
+            logger.info("Import job {} finished: {} rows in {} rows/s",
+                    job.getId(), job.getProgress().getRowsApplied(), Math.round(job.getRowsPerSecond()));
+        }
+    }
+
+    /**
+     * @return the running job of the key, a finished job if the key was completed before, else {@code null}
+     */
+    private ImportJob existingJob(String importKey, String fileName) {
+        ImportJob active = activeByKey.get(importKey);
+        if (active != null) {
+            return active;
+        }
+        ImportCheckpoint checkpoint = checkpointRepository.findById(importKey)
+                .filter(ImportCheckpoint::getCompleted)
+                .orElse(null);
+        if (checkpoint == null) {
+            return null;
+        }
+        ImportJob job = new ImportJob(UUID.randomUUID().toString(), fileName, importKey);
+        job.started();
+        job.getProgress().alreadyImported(checkpoint.getRowsCommitted());
+        job.succeeded();
+        jobs.put(job.getId(), job);
+        logger.info("Import {} of file {} was already applied", importKey, fileName);
+        return job;
+    }
+
+    // Copies the upload to the file and returns its content key
+    private static String storeHashed(MultipartFile file, Path target) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return "sha256:" + HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String clientKey(String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return null;
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            throw new InvalidRequestException("Idempotency key must have 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters.");
+        }
+        // Prefixed, so a client key can never collide with a content hash
+        return "key:" + idempotencyKey;
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete temporary file {}", file, e);
+        }
+    }
+
+    private void removeExpiredJobs() {
+        Instant threshold = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(threshold));
+    }
+
+    private static ExecutorService createExecutor(SocksProperties.Batch settings) {
+        if (settings.isVirtualThreads()) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("socks-import-", 1).factory());
+        }
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(settings.getMaxConcurrentImports(), runnable -> {
+            Thread thread = new Thread(runnable, "socks-import-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,142 @@
+package com.backspark.socks.service;
+
+import com.backspark.socks.config.SocksProperties;
+import com.backspark.socks.exception.InvalidRequestException;
+import com.backspark.socks.repository.SockRepository;
+import com.backspark.socks.service.batch.BatchFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams the stock as CSV or NDJSON in the layout of the batch upload, so an export can be
+ * imported again as it is.
+ * <p>
+ * Rows go from the database cursor through a fixed-size buffer straight to the response;
+ * memory use does not depend on the number of items. A full buffer is flushed to the client,
+ * so a slow client slows down the cursor instead of filling the heap.
+ */
+@Service
+public class SockExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SockExportService.class);
+
+    private static final String CSV_HEADER = "color,cottonPart,quantity\n";
+
+    private final SockRepository sockRepository;
+    private final int bufferSize;
+
+    public SockExportService(SockRepository sockRepository, SocksProperties properties) {
+        this.sockRepository = sockRepository;
+        this.bufferSize = properties.getExport().getBufferSize();
+    }
+
+    /**
+     * @param name {@code csv} or {@code ndjson}, case-insensitive
+     */
+    public static BatchFormat exportFormat(String name) {
+        return switch (name.toLowerCase(Locale.ROOT)) {
+            case "csv" -> BatchFormat.CSV;
+            case "ndjson" -> BatchFormat.NDJSON;
+            default -> throw new InvalidRequestException("Unknown export format: " + name + ". Use csv or ndjson.");
+        };
+    }
+
+    /**
+     * Writes the matching items in (color, cottonPart) order. The output stream is flushed
+     * but not closed.
+     *
+     * @return number of exported items
+     */
+    public long export(BatchFormat format, String color, Integer cottonPartMin, Integer cottonPartMax,
+                       boolean gzip, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, bufferSize) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(compressed != null ? compressed : out,
+                StandardCharsets.UTF_8), bufferSize);
+        long rows = switch (format) {
+            case CSV -> {
+                writer.write(CSV_HEADER);
+                yield sockRepository.exportSocks(color, cottonPartMin, cottonPartMax,
+                        (itemColor, cottonPart, quantity) -> writeCsv(writer, itemColor, cottonPart, quantity));
+            }
+            case NDJSON -> sockRepository.exportSocks(color, cottonPartMin, cottonPartMax,
+                    (itemColor, cottonPart, quantity) -> writeNdjson(writer, itemColor, cottonPart, quantity));
+            default -> throw new InvalidRequestException("Export is not available as " + format);
+        };
+        writer.flush();
+        if (compressed != null) {
+            compressed.finish();
+        }
+        out.flush();
+        logger.info("Exported {} items as {} in {} ms", rows, format, (System.nanoTime() - start) / 1_000_000);
+        return rows;
+    }
+
+    private static void writeCsv(Writer writer, String color, int cottonPart, int quantity) throws IOException {
+        if (needsQuotes(color)) {
+            writer.write('"');
+            writer.write(color.replace("\"", "\"\""));
+            writer.write('"');
+        } else {
+            writer.write(color);
+        }
+        writer.write(',');
+        writer.write(Integer.toString(cottonPart));
+        writer.write(',');
+        writer.write(Integer.toString(quantity));
+        writer.write('\n');
+    }
+
+    private static void writeNdjson(Writer writer, String color, int cottonPart, int quantity) throws IOException {
+        writer.write("{\"color\":\"");
+        writeJsonString(writer, color);
+        writer.write("\",\"cottonPart\":");
+        writer.write(Integer.toString(cottonPart));
+        writer.write(",\"quantity\":");
+        writer.write(Integer.toString(quantity));
+        writer.write("}\n");
+    }
+
+    // The CSV reader trims unquoted colors and splits them on commas
+    private static boolean needsQuotes(String color) {
+        if (color.isEmpty()) return false;
+        if (Character.isWhitespace(color.charAt(0)) || Character.isWhitespace(color.charAt(color.length() - 1))) {
+            return true;
+        }
+        for (int i = 0; i < color.length(); i++) {
+            char c = color.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+
+    private static void writeJsonString(Writer writer, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> writer.write("\\\"");
+                case '\\' -> writer.write("\\\\");
+                case '\n' -> writer.write("\\n");
+                case '\r' -> writer.write("\\r");
+                case '\t' -> writer.write("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.backspark.socks.service;
+
+import com.backspark.socks.exception.InsufficientSocksException;
+import com.backspark.socks.service.batch.BatchFormat;
+import com.backspark.socks.service.batch.BatchProgress;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Meters of the {@link SockService} hot paths.
+ * <p>
+ * {@code socks.movements} times income and outcome requests tagged by result, so the
+ * insufficient-stock rate is the share of {@code result=insufficient}. {@code socks.queries}
+ * times listing and total queries including cache hits. Batch imports publish their duration,
+ * applied and rejected rows and rows per second. All timers carry percentile histograms for
+ * the Prometheus endpoint. Meters are registered up front, so the hot path does no lookups.
+ */
+@Component
+public class SockMetrics {
+
+    public static final String MOVEMENTS = "socks.movements";
+    public static final String QUERIES = "socks.queries";
+    public static final String BATCH_IMPORTS = "socks.batch.imports";
+    public static final String BATCH_ROWS = "socks.batch.rows";
+    public static final String BATCH_ROWS_PER_SECOND = "socks.batch.rows.per.second";
+
+    enum Movement {
+        INCOME,
+        OUTCOME
+    }
+
+    private static final int SUCCESS = 0;
+    private static final int INSUFFICIENT = 1;
+    private static final int ERROR = 2;
+
+    private final Timer[][] movements = new Timer[Movement.values().length][];
+    private final Timer listingQueries;
+    private final Timer totalQueries;
+    private final Map<BatchFormat, Timer> succeededImports = new EnumMap<>(BatchFormat.class);
+    private final Map<BatchFormat, Timer> failedImports = new EnumMap<>(BatchFormat.class);
+    private final Map<BatchFormat, DistributionSummary> importThroughput = new EnumMap<>(BatchFormat.class);
+    private final Counter rowsApplied;
+    private final Counter rowsRejected;
+
+    public SockMetrics(MeterRegistry meterRegistry) {
+        for (Movement movement : Movement.values()) {
+            String type = movement.name().toLowerCase(Locale.ROOT);
+            movements[movement.ordinal()] = new Timer[]{
+                    movementTimer(meterRegistry, type, "success"),
+                    movementTimer(meterRegistry, type, "insufficient"),
+                    movementTimer(meterRegistry, type, "error")
+            };
+        }
+        this.listingQueries = queryTimer(meterRegistry, "listing");
+        this.totalQueries = queryTimer(meterRegistry, "total");
+        for (BatchFormat format : BatchFormat.values()) {
+            String name = format.name().toLowerCase(Locale.ROOT);
+            succeededImports.put(format, importTimer(meterRegistry, name, "success"));
+            failedImports.put(format, importTimer(meterRegistry, name, "error"));
+            importThroughput.put(format, DistributionSummary.builder(BATCH_ROWS_PER_SECOND)
+                    .description("Rows per second of finished batch imports")
+                    .tag("format", name)
+                    .register(meterRegistry));
+        }
+        this.rowsApplied = Counter.builder(BATCH_ROWS)
+                .description("Batch rows by result")
+                .tag("result", "applied")
+                .register(meterRegistry);
+        this.rowsRejected = Counter.builder(BATCH_ROWS)
+                .description("Batch rows by result")
+                .tag("result", "rejected")
+                .register(meterRegistry);
+    }
+
+    void recordMovement(Movement movement, Runnable action) {
+        Timer[] timers = movements[movement.ordinal()];
+        long start = System.nanoTime();
+        Timer timer = timers[ERROR];
+        try {
+            action.run();
+            timer = timers[SUCCESS];
+        } catch (InsufficientSocksException e) {
+            timer = timers[INSUFFICIENT];
+            throw e;
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    <T> T recordListing(Supplier<T> query) {
+        return listingQueries.record(query);
+    }
+
+    <T> T recordTotal(Supplier<T> query) {
+        return totalQueries.record(query);
+    }
+
+    void recordImport(BatchFormat format, BatchProgress progress, long durationNanos, boolean succeeded) {
+        (succeeded ? succeededImports : failedImports).get(format).record(durationNanos, TimeUnit.NANOSECONDS);
+        rowsApplied.increment(progress.getRowsApplied());
+        rowsRejected.increment(progress.getRowsRejected());
+        if (succeeded && durationNanos > 0) {
+            importThroughput.get(format).record(progress.getRowsApplied() * 1e9 / durationNanos);
+        }
+    }
+
+    private static Timer movementTimer(MeterRegistry meterRegistry, String type, String result) {
+        return Timer.builder(MOVEMENTS)
+                .description("Income and outcome requests")
+                .tag("type", type)
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static Timer queryTimer(MeterRegistry meterRegistry, String query) {
+        return Timer.builder(QUERIES)
+                .description("Stock queries, cache hits included")
+                .tag("query", query)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static Timer importTimer(MeterRegistry meterRegistry, String format, String result) {
+        return Timer.builder(BATCH_IMPORTS)
+                .description("Duration of batch imports")
+                .tag("format", format)
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
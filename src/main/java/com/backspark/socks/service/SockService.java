@@ -1,104 +1,355 @@
 package com.backspark.socks.service;
 
+import com.backspark.socks.dto.BulkMovementRequest;
+import com.backspark.socks.dto.BulkMovementResultDto;
+import com.backspark.socks.dto.CottonOperator;
+import com.backspark.socks.dto.MovementDto;
+import com.backspark.socks.dto.SockCursor;
 import com.backspark.socks.dto.SockDto;
+import com.backspark.socks.dto.SockWindowDto;
 import com.backspark.socks.exception.FileProcessingException;
 import com.backspark.socks.exception.InsufficientSocksException;
+import com.backspark.socks.exception.InvalidRequestException;
+import com.backspark.socks.model.MovementSource;
 import com.backspark.socks.model.Sock;
+import com.backspark.socks.model.SockKey;
+import com.backspark.socks.repository.MovementHistoryRepository;
 import com.backspark.socks.repository.SockRepository;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import com.backspark.socks.repository.SockSpecifications;
+import com.backspark.socks.service.batch.BatchFormat;
+import com.backspark.socks.service.batch.BatchProgress;
+import com.backspark.socks.service.batch.ChunkedImportEngine;
+import com.backspark.socks.service.batch.SockRowReaders;
+import com.backspark.socks.service.cache.SockQueryCache;
+import com.backspark.socks.service.index.StockIndex;
+import com.backspark.socks.service.ledger.WriteBehindLedger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 
 @Service
 public class SockService {
 
     private static final Logger logger = LoggerFactory.getLogger(SockService.class);
 
+    private static final Sort KEYSET_SORT = Sort.by("color", "cottonPart");
+
     private final SockRepository sockRepository;
+    private final SockRowReaders sockRowReaders;
+    private final Optional<WriteBehindLedger> writeBehindLedger;
+    private final SockQueryCache sockQueryCache;
+    private final ChunkedImportEngine chunkedImportEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final SockMetrics sockMetrics;
+    private final ConcurrencyRetry concurrencyRetry;
+    private final MovementHistoryRepository movementHistory;
+    private final Optional<StockIndex> stockIndex;
 
-    public SockService(SockRepository sockRepository) {
+    public SockService(SockRepository sockRepository,
+                       SockRowReaders sockRowReaders,
+                       Optional<WriteBehindLedger> writeBehindLedger,
+                       SockQueryCache sockQueryCache,
+                       ChunkedImportEngine chunkedImportEngine,
+                       TransactionTemplate transactionTemplate,
+                       SockMetrics sockMetrics,
+                       ConcurrencyRetry concurrencyRetry,
+                       MovementHistoryRepository movementHistory,
+                       Optional<StockIndex> stockIndex) {
         this.sockRepository = sockRepository;
+        this.sockRowReaders = sockRowReaders;
+        this.writeBehindLedger = writeBehindLedger;
+        this.sockQueryCache = sockQueryCache;
+        this.chunkedImportEngine = chunkedImportEngine;
+        this.transactionTemplate = transactionTemplate;
+        this.sockMetrics = sockMetrics;
+        this.concurrencyRetry = concurrencyRetry;
+        this.movementHistory = movementHistory;
+        this.stockIndex = stockIndex;
     }
 
-    @Transactional
+    /**
+     * Both movements are single atomic statements, committed in one short transaction with their
+     * entry in the movement history; the row lock is taken by the last change of the stock. A write
+     * that loses a race with a concurrent one is repeated by {@link ConcurrencyRetry}. In
+     * write-behind mode they do not touch the database at all.
+     */
     public void registerIncome(SockDto sockDto) {
-        logger.info("Registering income: {}", sockDto);
-        Sock sock = findOrCreateSock(sockDto.getColor(), sockDto.getCottonPart());
-        sock.setQuantity(sock.getQuantity() + sockDto.getQuantity());
-        sockRepository.save(sock);
+        sockMetrics.recordMovement(SockMetrics.Movement.INCOME, () -> concurrencyRetry.run(() -> income(sockDto)));
     }
 
-    @Transactional
     public void registerOutcome(SockDto sockDto) {
-        logger.info("Registering outcome: {}", sockDto);
-        Sock sock = sockRepository.findByColorAndCottonPart(sockDto.getColor(), sockDto.getCottonPart())
-                .stream()
-                .findFirst()
-                .orElseThrow(() -> new InsufficientSocksException("Socks not found."));
+        sockMetrics.recordMovement(SockMetrics.Movement.OUTCOME, () -> concurrencyRetry.run(() -> outcome(sockDto)));
+    }
 
-        if (sock.getQuantity() < sockDto.getQuantity()) {
-            throw new InsufficientSocksException("Not enough socks in stock.");
+    private void income(SockDto sockDto) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("event=income color={} cottonPart={} quantity={}", sockDto.getColor(), sockDto.getCottonPart(), sockDto.getQuantity());
         }
-
-        sock.setQuantity(sock.getQuantity() - sockDto.getQuantity());
-        sockRepository.save(sock);
+        SockKey key = new SockKey(sockDto.getColor(), sockDto.getCottonPart());
+        if (writeBehindLedger.isPresent()) {
+            writeBehindLedger.get().registerIncome(key, sockDto.getQuantity());
+            stockIndex.ifPresent(index -> index.apply(key, sockDto.getQuantity()));
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            int updated = sockRepository.increaseQuantity(sockDto.getColor(), sockDto.getCottonPart(), sockDto.getQuantity());
+            if (updated == 0) {
+                // First income of the item. The upsert also covers a concurrent first income of the same item.
+                sockRepository.addQuantities(Map.of(key, sockDto.getQuantity()));
+            }
+            movementHistory.append(MovementSource.REQUEST, Map.of(key, sockDto.getQuantity()), Map.of());
+        });
+        stockIndex.ifPresent(index -> index.apply(key, sockDto.getQuantity()));
+        sockQueryCache.invalidate(key);
     }
 
-    public List<Sock> getSocks(String color, Integer cottonPartMin, Integer cottonPartMax, Pageable pageable) {
-        if (color == null && cottonPartMin == null && cottonPartMax == null) {
-            return sockRepository.findAll();
+    private void outcome(SockDto sockDto) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("event=outcome color={} cottonPart={} quantity={}", sockDto.getColor(), sockDto.getCottonPart(), sockDto.getQuantity());
+        }
+        SockKey key = new SockKey(sockDto.getColor(), sockDto.getCottonPart());
+        if (writeBehindLedger.isPresent()) {
+            writeBehindLedger.get().registerOutcome(key, sockDto.getQuantity());
+            stockIndex.ifPresent(index -> index.apply(key, -sockDto.getQuantity()));
+            return;
         }
-        return sockRepository.findByColorAndCottonPartBetween(
-                color,
-                cottonPartMin != null ? cottonPartMin : 0,
-                cottonPartMax != null ? cottonPartMax : 100
-        );
+        transactionTemplate.executeWithoutResult(status -> {
+            int updated = sockRepository.decreaseQuantity(sockDto.getColor(), sockDto.getCottonPart(), sockDto.getQuantity());
+            if (updated == 0) {
+                if (!sockRepository.existsByColorAndCottonPart(sockDto.getColor(), sockDto.getCottonPart())) {
+                    throw new InsufficientSocksException("Socks not found.");
+                }
+                throw new InsufficientSocksException("Not enough socks in stock.");
+            }
+            movementHistory.append(MovementSource.REQUEST, Map.of(), Map.of(key, sockDto.getQuantity()));
+        });
+        stockIndex.ifPresent(index -> index.apply(key, -sockDto.getQuantity()));
+        sockQueryCache.invalidate(key);
     }
 
-    @Transactional
-    public void uploadBatch(MultipartFile file) {
-        logger.info("Uploading batch from file: {}", file.getOriginalFilename());
-        try (Workbook workbook = new XSSFWorkbook(file.getInputStream())) {
-            Sheet sheet = workbook.getSheetAt(0);
+    /**
+     * Applies a list of income and outcome lines.
+     * <p>
+     * In atomic mode the lines of each item are netted first. The net changes are then applied in one
+     * transaction and one pass over the items sorted by (color, cottonPart), outcomes as conditional
+     * updates and incomes as upserts, so concurrent bulk requests lock rows in the same order. If an
+     * outcome cannot be covered, nothing is applied and the outcome lines of that item are rejected.
+     * In per-line mode every line is applied on its own like a single request.
+     */
+    public BulkMovementResultDto registerMovements(BulkMovementRequest request) {
+        List<MovementDto> movements = request.getMovements();
+        logger.debug("event=movements lines={} mode={}", movements.size(), request.getMode());
+        if (request.getMode() == BulkMovementRequest.Mode.PER_LINE) {
+            return registerMovementsPerLine(movements);
+        }
 
-            for (Row row : sheet) {
-                if (row.getRowNum() == 0) continue;
+        Map<SockKey, Integer> deltas = new TreeMap<>(SockKey.KEY_ORDER);
+        // Gross quantities per item for the movement history, an income and an outcome do not cancel out there
+        Map<SockKey, Integer> incomes = new HashMap<>();
+        Map<SockKey, Integer> outcomes = new HashMap<>();
+        try {
+            for (MovementDto movement : movements) {
+                SockKey key = new SockKey(movement.getColor(), movement.getCottonPart());
+                boolean income = movement.getType() == MovementDto.Type.INCOME;
+                deltas.merge(key, income ? movement.getQuantity() : -movement.getQuantity(), Math::addExact);
+                (income ? incomes : outcomes).merge(key, movement.getQuantity(), Math::addExact);
+            }
+        } catch (ArithmeticException e) {
+            throw new InvalidRequestException("Total quantity of a sock item is too large.");
+        }
 
-                String color = row.getCell(0).getStringCellValue();
-                int cottonPart = (int) row.getCell(1).getNumericCellValue();
-                int quantity = (int) row.getCell(2).getNumericCellValue();
+        Map<SockKey, String> rejected = writeBehindLedger.isPresent()
+                ? writeBehindLedger.get().registerAll(deltas)
+                : applyMovements(deltas, incomes, outcomes);
+        if (rejected.isEmpty()) {
+            stockIndex.ifPresent(index -> index.apply(deltas));
+        }
 
-                Sock sock = findOrCreateSock(color, cottonPart);
-                sock.setQuantity(sock.getQuantity() + quantity);
-                sockRepository.save(sock);
+        List<BulkMovementResultDto.LineResult> lines = new ArrayList<>(movements.size());
+        for (int i = 0; i < movements.size(); i++) {
+            MovementDto movement = movements.get(i);
+            String error = movement.getType() == MovementDto.Type.OUTCOME
+                    ? rejected.get(new SockKey(movement.getColor(), movement.getCottonPart()))
+                    : null;
+            if (error != null) {
+                lines.add(new BulkMovementResultDto.LineResult(i, BulkMovementResultDto.Status.REJECTED, error));
+            } else {
+                lines.add(new BulkMovementResultDto.LineResult(i, rejected.isEmpty()
+                        ? BulkMovementResultDto.Status.APPLIED
+                        : BulkMovementResultDto.Status.NOT_APPLIED, null));
             }
+        }
+        return BulkMovementResultDto.of(lines);
+    }
+
+    /**
+     * Returns one page of socks. Filters, sorting and limit/offset are applied by the database.
+     * Reads run in the repository transaction, so a cache hit does not take a connection.
+     */
+    public Page<Sock> getSocks(String color, Integer cottonPartMin, Integer cottonPartMax, Pageable pageable) {
+        return sockMetrics.recordListing(() -> sockQueryCache.getListing(color, cottonPartMin, cottonPartMax, pageable, () ->
+                sockRepository.findAll(SockSpecifications.filter(color, cottonPartMin, cottonPartMax), pageable)));
+    }
+
+    /**
+     * Returns the total quantity of matching socks computed by the database, or by the stock index
+     * when it is enabled. The cotton part can be compared with an operator, limited by a range, or both.
+     */
+    public long countSocks(String color, CottonOperator operator, Integer cottonPart, Integer cottonPartMin, Integer cottonPartMax) {
+        if (operator != null && cottonPart == null) {
+            throw new InvalidRequestException("Cotton part is required when an operator is given.");
+        }
+        if (stockIndex.isPresent()) {
+            return sockMetrics.recordTotal(() -> sumIndexed(stockIndex.get(), color, operator, cottonPart, cottonPartMin, cottonPartMax));
+        }
+        return sockMetrics.recordTotal(() -> sockQueryCache.getTotal(color, operator, cottonPart, cottonPartMin, cottonPartMax, () -> {
+            Specification<Sock> specification = SockSpecifications.filter(color, cottonPartMin, cottonPartMax)
+                    .and(SockSpecifications.cottonPart(operator, cottonPart));
+            return sockRepository.sumQuantity(specification);
+        }));
+    }
+
+    /**
+     * Returns socks after the cursor in (color, cottonPart) order. Unlike {@link #getSocks} the
+     * database seeks directly to the cursor, so deep pages are as cheap as the first one.
+     */
+    @Transactional(readOnly = true)
+    public SockWindowDto scrollSocks(String color, Integer cottonPartMin, Integer cottonPartMax, SockCursor cursor, int size) {
+        Specification<Sock> specification = SockSpecifications.filter(color, cottonPartMin, cottonPartMax)
+                .and(SockSpecifications.after(cursor));
+        List<Sock> socks = sockRepository.findBy(specification, query -> query
+                .sortBy(KEYSET_SORT)
+                .limit(size + 1)
+                .all());
+        if (socks.size() <= size) {
+            return new SockWindowDto(socks, null);
+        }
+        List<Sock> page = socks.subList(0, size);
+        Sock last = page.get(size - 1);
+        return new SockWindowDto(page, new SockCursor(last.getColor(), last.getCottonPart()).encode());
+    }
+
+    public void uploadBatch(MultipartFile file) {
+        BatchFormat format = BatchFormat.fromFileName(file.getOriginalFilename())
+                .orElseThrow(() -> new FileProcessingException("Unsupported file format: " + file.getOriginalFilename()));
+        try (InputStream inputStream = file.getInputStream()) {
+            importBatch(inputStream, file.getOriginalFilename(), format, new BatchProgress());
         } catch (IOException e) {
             logger.error("Error processing file: {}", file.getOriginalFilename(), e);
-            throw new FileProcessingException("Failed to process the Excel file", e);
+            throw new FileProcessingException("Failed to process the batch file", e);
+        }
+    }
+
+    public void importBatch(InputStream inputStream, String fileName, BatchFormat format, BatchProgress progress) {
+        importBatch(inputStream, fileName, format, null, progress);
+    }
+
+    /**
+     * Imports a batch file through the {@link ChunkedImportEngine} and reports the row counters
+     * to {@code progress}. Transactions are managed per chunk by the engine. With an import key
+     * the rows applied by an earlier run with the same key are skipped.
+     */
+    public void importBatch(InputStream inputStream, String fileName, BatchFormat format, String importKey, BatchProgress progress) {
+        logger.info("Uploading batch from file: {} ({})", fileName, format);
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        try {
+            long rows = chunkedImportEngine.importRows(inputStream, sockRowReaders.get(format), progress, importKey, this::onBatchCommitted);
+            succeeded = true;
+            logger.info("Processed {} rows from file: {}", rows, fileName);
+        } catch (IOException e) {
+            logger.error("Error processing file: {}", fileName, e);
+            throw new FileProcessingException("Failed to process the batch file", e);
+        } finally {
+            sockMetrics.recordImport(format, progress, System.nanoTime() - start, succeeded);
+        }
+    }
+
+    private BulkMovementResultDto registerMovementsPerLine(List<MovementDto> movements) {
+        List<BulkMovementResultDto.LineResult> lines = new ArrayList<>(movements.size());
+        for (int i = 0; i < movements.size(); i++) {
+            MovementDto movement = movements.get(i);
+            SockDto sockDto = new SockDto(movement.getColor(), movement.getCottonPart(), movement.getQuantity());
+            try {
+                if (movement.getType() == MovementDto.Type.INCOME) {
+                    registerIncome(sockDto);
+                } else {
+                    registerOutcome(sockDto);
+                }
+                lines.add(new BulkMovementResultDto.LineResult(i, BulkMovementResultDto.Status.APPLIED, null));
+            } catch (InsufficientSocksException e) {
+                lines.add(new BulkMovementResultDto.LineResult(i, BulkMovementResultDto.Status.REJECTED, e.getMessage()));
+            }
+        }
+        return BulkMovementResultDto.of(lines);
+    }
+
+    private Map<SockKey, String> applyMovements(Map<SockKey, Integer> deltas,
+                                                Map<SockKey, Integer> grossIncomes, Map<SockKey, Integer> grossOutcomes) {
+        // deltas is sorted by SockKey.KEY_ORDER, so every bulk request locks its rows in the same global order
+        Set<SockKey> failed = concurrencyRetry.call(() -> transactionTemplate.execute(status -> {
+            Set<SockKey> notRemoved = sockRepository.applyQuantities(deltas);
+            if (!notRemoved.isEmpty()) {
+                status.setRollbackOnly();
+                return notRemoved;
+            }
+            movementHistory.append(MovementSource.BULK, grossIncomes, grossOutcomes);
+            return notRemoved;
+        }));
+
+        if (failed == null || failed.isEmpty()) {
+            sockQueryCache.invalidate(deltas.keySet());
+            return Map.of();
+        }
+        Map<SockKey, String> rejected = new HashMap<>();
+        for (SockKey key : failed) {
+            rejected.put(key, sockRepository.existsByColorAndCottonPart(key.color(), key.cottonPart())
+                    ? "Not enough socks in stock."
+                    : "Socks not found.");
+        }
+        return rejected;
+    }
+
+    // The operator and the range both narrow the cotton parts to one interval
+    private static long sumIndexed(StockIndex index, String color, CottonOperator operator, Integer cottonPart,
+                                   Integer cottonPartMin, Integer cottonPartMax) {
+        long from = cottonPartMin != null ? cottonPartMin : 0;
+        long to = cottonPartMax != null ? cottonPartMax : StockIndex.MAX_COTTON_PART;
+        if (operator != null) {
+            switch (operator) {
+                case MORE_THAN -> from = Math.max(from, cottonPart + 1L);
+                case LESS_THAN -> to = Math.min(to, cottonPart - 1L);
+                case EQUAL -> {
+                    from = Math.max(from, cottonPart);
+                    to = Math.min(to, cottonPart);
+                }
+            }
         }
+        if (from > to || to < 0 || from > StockIndex.MAX_COTTON_PART) return 0;
+        return index.sum(color, (int) Math.max(from, 0), (int) Math.min(to, StockIndex.MAX_COTTON_PART));
     }
 
-    private Sock findOrCreateSock(String color, Integer cottonPart) {
-        return sockRepository.findByColorAndCottonPart(color, cottonPart)
-                .stream()
-                .findFirst()
-                .orElseGet(() -> {
-                    Sock newSock = new Sock();
-                    newSock.setColor(color);
-                    newSock.setCottonPart(cottonPart);
-                    newSock.setQuantity(0);
-                    return newSock;
-                });
+    private void onBatchCommitted(Map<SockKey, Integer> quantities) {
+        writeBehindLedger.ifPresent(ledger -> ledger.onExternalChange(quantities.keySet()));
+        stockIndex.ifPresent(index -> index.apply(quantities));
+        sockQueryCache.invalidate(quantities.keySet());
     }
 
 }
@@ -0,0 +1,50 @@
+package com.backspark.socks.service;
+
+import com.backspark.socks.dto.TurnoverDto;
+import com.backspark.socks.dto.TurnoverGranularity;
+import com.backspark.socks.exception.InvalidRequestException;
+import com.backspark.socks.repository.MovementHistoryRepository;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Turnover reports over the movement history. Reports read the hourly and daily rollups only,
+ * so their cost depends on the period and the number of items, not on the size of the history.
+ */
+@Service
+public class StockAnalyticsService {
+
+    private final MovementHistoryRepository movementHistory;
+
+    public StockAnalyticsService(MovementHistoryRepository movementHistory) {
+        this.movementHistory = movementHistory;
+    }
+
+    /**
+     * Returns the socks received and shipped per bucket, color and cotton band in {@code [from, to)}.
+     * The period is widened to whole buckets, so the bucket containing {@code to} is included.
+     *
+     * @param cottonBand width of a cotton band in percent, 1 for every cotton part on its own
+     */
+    public List<TurnoverDto> getTurnover(TurnoverGranularity granularity, Instant from, Instant to, String color, int cottonBand) {
+        if (cottonBand < 1 || cottonBand > 101) {
+            throw new InvalidRequestException("Cotton band must be between 1 and 101.");
+        }
+        if (!from.isBefore(to)) {
+            throw new InvalidRequestException("The period must end after it starts.");
+        }
+        Instant start = from.truncatedTo(granularity.getUnit());
+        Instant end = to.truncatedTo(granularity.getUnit());
+        if (end.isBefore(to)) {
+            end = end.plus(1, granularity.getUnit());
+        }
+        if (Duration.between(start, end).compareTo(granularity.getMaxRange()) > 0) {
+            throw new InvalidRequestException("The period is too long for granularity " + granularity.getValue()
+                    + ", at most " + granularity.getMaxRange().toDays() + " days can be queried.");
+        }
+        return movementHistory.turnover(granularity, start, end, color, cottonBand);
+    }
+}
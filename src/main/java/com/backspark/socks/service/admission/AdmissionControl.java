@@ -0,0 +1,183 @@
+package com.backspark.socks.service.admission;
+
+import com.backspark.socks.config.SocksProperties;
+import com.backspark.socks.exception.RequestThrottledException;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admits requests to the API: a token bucket per client, then a bulkhead per lane.
+ * <p>
+ * Reads, writes and batch transfers have separate bulkheads, so slow uploads and exports or a
+ * flood of queries cannot take the threads and connections income and outcome need. Unless set
+ * explicitly, the bulkheads are sized from the connection pool: writes may use all of it, reads and
+ * batch transfers share the part left by {@code socks.admission.write-reserve}. Rejected requests
+ * fail at once with a retry hint instead of queuing for the connection pool.
+ * {@code socks.admission.active} and {@code socks.admission.queue} gauge the requests inside and
+ * waiting at every bulkhead, {@code socks.admission.rejections} counts rejections by lane and reason.
+ */
+@Component
+@ConditionalOnProperty(prefix = "socks.admission", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionControl {
+
+    public static final String ACTIVE = "socks.admission.active";
+    public static final String QUEUE = "socks.admission.queue";
+    public static final String REJECTIONS = "socks.admission.rejections";
+
+    public enum Lane {
+        /**
+         * Queries of the stock and of import jobs.
+         */
+        READ,
+        /**
+         * Income, outcome and bulk movements.
+         */
+        WRITE,
+        /**
+         * File uploads and stock exports.
+         */
+        BATCH
+    }
+
+    // Reads and writes free their slots within milliseconds, uploads and exports take minutes
+    private static final long BULKHEAD_RETRY_AFTER_SECONDS = 1;
+    private static final long BATCH_RETRY_AFTER_SECONDS = 30;
+
+    // Default of spring.datasource.hikari.maximum-pool-size
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionControl.class);
+
+    private final String clientHeader;
+    private final Set<String> trustedKeys;
+    private final ClientRateLimiter rateLimiter;
+    private final Map<Lane, Bulkhead> bulkheads = new EnumMap<>(Lane.class);
+    private final Map<Lane, Counter> rateLimited = new EnumMap<>(Lane.class);
+    private final Map<Lane, Counter> bulkheadFull = new EnumMap<>(Lane.class);
+
+    @Autowired
+    public AdmissionControl(SocksProperties properties, DataSource dataSource, MeterRegistry meterRegistry) {
+        this(properties, dataSource instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : DEFAULT_POOL_SIZE,
+                meterRegistry);
+    }
+
+    /**
+     * @param connectionPoolSize connections of the pool the bulkheads are sized for
+     */
+    public AdmissionControl(SocksProperties properties, int connectionPoolSize, MeterRegistry meterRegistry) {
+        SocksProperties.Admission admission = properties.getAdmission();
+        this.clientHeader = admission.getClientHeader();
+        this.trustedKeys = Set.copyOf(admission.getTrustedKeys());
+        this.rateLimiter = admission.getRequestsPerSecond() > 0
+                ? new ClientRateLimiter(admission.getRequestsPerSecond(), admission.getBurst(), admission.getMaxClients(), System::nanoTime)
+                : null;
+
+        int shared = connectionPoolSize - (int) Math.ceil(connectionPoolSize * admission.getWriteReserve());
+        int batch = maxConcurrent(admission.getBatch(), Math.max(1, shared / 4));
+        int reads = maxConcurrent(admission.getReads(), Math.max(1, shared - batch));
+        int writes = maxConcurrent(admission.getWrites(), connectionPoolSize);
+        if (reads + batch > shared || writes > connectionPoolSize) {
+            throw new IllegalArgumentException(String.format(
+                    "Bulkheads of %d reads, %d writes and %d batch transfers do not fit a pool of %d connections "
+                            + "with %d of them reserved for writes", reads, writes, batch, connectionPoolSize,
+                    connectionPoolSize - shared));
+        }
+        logger.info("event=admission pool={} reads={} writes={} batch={}", connectionPoolSize, reads, writes, batch);
+        bulkheads.put(Lane.READ, new Bulkhead(reads, admission.getReads().getMaxWait()));
+        bulkheads.put(Lane.WRITE, new Bulkhead(writes, admission.getWrites().getMaxWait()));
+        bulkheads.put(Lane.BATCH, new Bulkhead(batch, admission.getBatch().getMaxWait()));
+
+        for (Lane lane : Lane.values()) {
+            String name = lane.name().toLowerCase(Locale.ROOT);
+            Bulkhead bulkhead = bulkheads.get(lane);
+            Gauge.builder(ACTIVE, bulkhead, Bulkhead::active)
+                    .description("Requests inside the bulkhead")
+                    .tag("lane", name)
+                    .register(meterRegistry);
+            Gauge.builder(QUEUE, bulkhead, Bulkhead::waiting)
+                    .description("Requests waiting for a bulkhead slot")
+                    .tag("lane", name)
+                    .register(meterRegistry);
+            rateLimited.put(lane, rejectionCounter(meterRegistry, name, "rate_limit"));
+            bulkheadFull.put(lane, rejectionCounter(meterRegistry, name, "bulkhead"));
+        }
+    }
+
+    /**
+     * Admits a request of the client.
+     *
+     * @return the entered bulkhead, whose {@link Bulkhead#exit()} must be called when the request completes
+     * @throws RequestThrottledException if the client is over its rate or the lane is full
+     */
+    public Bulkhead admit(String client, Lane lane) {
+        if (rateLimiter != null) {
+            long waitNanos = rateLimiter.tryAcquire(client);
+            if (waitNanos > 0) {
+                rateLimited.get(lane).increment();
+                throw new RequestThrottledException("Too many requests from the client.",
+                        Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1)));
+            }
+        }
+        Bulkhead bulkhead = bulkheads.get(lane);
+        boolean entered;
+        try {
+            entered = bulkhead.tryEnter();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            entered = false;
+        }
+        if (!entered) {
+            bulkheadFull.get(lane).increment();
+            throw new RequestThrottledException("The service is busy.",
+                    lane == Lane.BATCH ? BATCH_RETRY_AFTER_SECONDS : BULKHEAD_RETRY_AFTER_SECONDS);
+        }
+        return bulkhead;
+    }
+
+    /**
+     * Header carrying the API key of a request.
+     */
+    public String getClientHeader() {
+        return clientHeader;
+    }
+
+    /**
+     * Identifies the client a request is limited as. The key is not verified by anything else, so
+     * only a trusted key stands for a client; other requests are told apart by their address.
+     *
+     * @param apiKey value of the client header, may be {@code null}
+     */
+    public String client(String apiKey, String remoteAddress) {
+        return apiKey != null && trustedKeys.contains(apiKey) ? "key:" + apiKey : "ip:" + remoteAddress;
+    }
+
+    int maxConcurrent(Lane lane) {
+        return bulkheads.get(lane).maxConcurrent();
+    }
+
+    private static int maxConcurrent(SocksProperties.BulkheadLimits limits, int derived) {
+        return limits.getMaxConcurrent() > 0 ? limits.getMaxConcurrent() : derived;
+    }
+
+    private static Counter rejectionCounter(MeterRegistry meterRegistry, String lane, String reason) {
+        return Counter.builder(REJECTIONS)
+                .description("Requests rejected by admission control")
+                .tag("lane", lane)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,71 @@
+package com.backspark.socks.service.admission;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of requests of one kind handled at the same time. A request finding all
+ * slots taken waits at most {@code maxWait} for one, so the queue is bounded by time rather than
+ * by length and a waiting request never outlives the wait.
+ */
+public class Bulkhead {
+
+    private final int maxConcurrent;
+    private final long maxWaitNanos;
+    private final Semaphore slots;
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    public Bulkhead(int maxConcurrent, Duration maxWait) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("Max concurrent requests must be positive: " + maxConcurrent);
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.slots = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Takes a slot, waiting for one up to the max wait. A taken slot must be given back with
+     * {@link #exit()}.
+     *
+     * @return {@code false} if no slot became free in time
+     */
+    public boolean tryEnter() throws InterruptedException {
+        if (slots.tryAcquire()) {
+            return true;
+        }
+        if (maxWaitNanos <= 0) {
+            return false;
+        }
+        waiting.incrementAndGet();
+        try {
+            return slots.tryAcquire(maxWaitNanos, TimeUnit.NANOSECONDS);
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    public void exit() {
+        slots.release();
+    }
+
+    public int maxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Requests holding a slot.
+     */
+    public int active() {
+        return maxConcurrent - slots.availablePermits();
+    }
+
+    /**
+     * Requests waiting for a slot.
+     */
+    public int waiting() {
+        return waiting.get();
+    }
+}
@@ -0,0 +1,77 @@
+package com.backspark.socks.service.admission;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket per client.
+ * <p>
+ * A bucket holds up to {@code burst} tokens and gains {@code requestsPerSecond} tokens per second,
+ * every request takes one. Buckets are refilled lazily when a request arrives, so an idle client
+ * costs nothing. A bucket left idle long enough to be full again is the same as a new one, so it
+ * is evicted after that time; the number of buckets is bounded as well.
+ */
+public class ClientRateLimiter {
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private final LongSupplier clock;
+    private final Cache<String, Bucket> buckets;
+
+    /**
+     * @param clock nanosecond clock, {@code System::nanoTime} outside tests
+     */
+    public ClientRateLimiter(double requestsPerSecond, int burst, long maxClients, LongSupplier clock) {
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("Requests per second must be positive: " + requestsPerSecond);
+        }
+        this.tokensPerNano = requestsPerSecond / 1e9;
+        this.capacity = Math.max(burst, 1);
+        this.clock = clock;
+        long refillNanos = (long) Math.ceil(capacity / tokensPerNano);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofNanos(Math.max(refillNanos, Duration.ofSeconds(1).toNanos())))
+                .ticker(clock::getAsLong)
+                .build();
+    }
+
+    /**
+     * Takes a token of the client.
+     *
+     * @return 0 if the request is admitted, otherwise the nanoseconds until the client gets a token
+     */
+    public long tryAcquire(String client) {
+        long now = clock.getAsLong();
+        return buckets.get(client, key -> new Bucket(now)).tryAcquire(now);
+    }
+
+    long clients() {
+        return buckets.estimatedSize();
+    }
+
+    private final class Bucket {
+
+        private double tokens = capacity;
+        private long refilledAt;
+
+        Bucket(long now) {
+            this.refilledAt = now;
+        }
+
+        synchronized long tryAcquire(long now) {
+            if (now > refilledAt) {
+                tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+                refilledAt = now;
+            }
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / tokensPerNano);
+        }
+    }
+}
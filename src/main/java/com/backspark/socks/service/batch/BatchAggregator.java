@@ -0,0 +1,35 @@
+package com.backspark.socks.service.batch;
+
+import com.backspark.socks.exception.FileProcessingException;
+import com.backspark.socks.model.SockKey;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Validates batch rows and sums their quantities per (color, cottonPart), so every
+ * sock item is written only once no matter how many rows mention it.
+ */
+public class BatchAggregator implements SockRowHandler {
+
+    private final Map<SockKey, Integer> quantities = new HashMap<>();
+
+    @Override
+    public void onRow(int rowNum, String color, int cottonPart, int quantity) {
+        if (cottonPart < 0 || cottonPart > 100) {
+            throw new FileProcessingException("Invalid row " + (rowNum + 1) + ": cotton part must be between 0 and 100");
+        }
+        if (quantity < 0) {
+            throw new FileProcessingException("Invalid row " + (rowNum + 1) + ": quantity cannot be negative");
+        }
+        try {
+            quantities.merge(new SockKey(color, cottonPart), quantity, Math::addExact);
+        } catch (ArithmeticException e) {
+            throw new FileProcessingException("Invalid row " + (rowNum + 1) + ": total quantity is too large");
+        }
+    }
+
+    public Map<SockKey, Integer> getQuantities() {
+        return quantities;
+    }
+}
@@ -0,0 +1,53 @@
+package com.backspark.socks.service.batch;
+
+import org.springframework.http.MediaType;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * File formats accepted by the batch upload.
+ */
+public enum BatchFormat {
+    XLSX(new String[]{".xlsx"}, "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"),
+    CSV(new String[]{".csv"}, "text/csv"),
+    NDJSON(new String[]{".ndjson", ".jsonl"}, "application/x-ndjson");
+
+    private final String[] extensions;
+    private final MediaType mediaType;
+
+    BatchFormat(String[] extensions, String mediaType) {
+        this.extensions = extensions;
+        this.mediaType = MediaType.parseMediaType(mediaType);
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Preferred file extension including the dot, e.g. {@code .csv}.
+     */
+    public String getExtension() {
+        return extensions[0];
+    }
+
+    public static Optional<BatchFormat> fromFileName(String fileName) {
+        if (fileName == null) return Optional.empty();
+        String name = fileName.toLowerCase(Locale.ROOT);
+        for (BatchFormat format : values()) {
+            for (String extension : format.extensions) {
+                if (name.endsWith(extension)) return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+
+    public static Optional<BatchFormat> fromMediaType(MediaType mediaType) {
+        if (mediaType == null) return Optional.empty();
+        for (BatchFormat format : values()) {
+            if (format.mediaType.isCompatibleWith(mediaType)) return Optional.of(format);
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,62 @@
+package com.backspark.socks.service.batch;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Row counters of a batch upload, updated by the importing thread and read by status requests.
+ */
+public class BatchProgress {
+
+    private final AtomicLong rowsParsed = new AtomicLong();
+    private final AtomicLong rowsApplied = new AtomicLong();
+    private final AtomicLong rowsRejected = new AtomicLong();
+    private final AtomicLong rowsSkipped = new AtomicLong();
+    private volatile boolean alreadyImported;
+
+    public long getRowsParsed() {
+        return rowsParsed.get();
+    }
+
+    public void setRowsParsed(long rows) {
+        rowsParsed.set(rows);
+    }
+
+    public long getRowsApplied() {
+        return rowsApplied.get();
+    }
+
+    public void addRowsApplied(long rows) {
+        rowsApplied.addAndGet(rows);
+    }
+
+    public long getRowsRejected() {
+        return rowsRejected.get();
+    }
+
+    public void addRowsRejected(long rows) {
+        rowsRejected.addAndGet(rows);
+    }
+
+    /**
+     * @return leading rows applied by an earlier run of the same import and skipped now
+     */
+    public long getRowsSkipped() {
+        return rowsSkipped.get();
+    }
+
+    public void addRowsSkipped(long rows) {
+        rowsSkipped.addAndGet(rows);
+    }
+
+    /**
+     * @return {@code true} if the import had been completed before and nothing was applied
+     */
+    public boolean isAlreadyImported() {
+        return alreadyImported;
+    }
+
+    public void alreadyImported(long rows) {
+        rowsSkipped.set(rows);
+        alreadyImported = true;
+    }
+}
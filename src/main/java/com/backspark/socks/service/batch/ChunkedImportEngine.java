@@ -0,0 +1,335 @@
+package com.backspark.socks.service.batch;
+
+import com.backspark.socks.config.SocksProperties;
+import com.backspark.socks.exception.FileProcessingException;
+import com.backspark.socks.exception.ImportRejectedException;
+import com.backspark.socks.model.ImportCheckpoint;
+import com.backspark.socks.model.MovementSource;
+import com.backspark.socks.model.SockKey;
+import com.backspark.socks.repository.ImportCheckpointRepository;
+import com.backspark.socks.repository.ImportStagingRepository;
+import com.backspark.socks.repository.MovementHistoryRepository;
+import com.backspark.socks.repository.SockRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Imports batch files as a pipeline of fixed-size row chunks.
+ * <p>
+ * The calling thread parses the file and cuts it into chunks of {@code rows-per-chunk} rows.
+ * A fork-join pool validates and pre-aggregates chunks in parallel. A writer thread stores
+ * every aggregated chunk in its own short transaction, so row locks are held for one chunk
+ * only. A bounded queue between them stops the parser from running ahead of the database.
+ * <p>
+ * In {@link SocksProperties.CommitMode#STAGED} mode chunks go to a staging table instead, and
+ * one final statement merges them into the socks table, so the upload is applied entirely or
+ * not at all.
+ * <p>
+ * An import with a key keeps an {@link ImportCheckpoint}: every chunk advances it in its own
+ * transaction, so a later run with the same key skips the rows that are already applied and
+ * a completed import is not applied twice.
+ * <p>
+ * The quantities of every committed chunk, or of the whole upload in staged mode, are appended
+ * to the movement history in the same transaction.
+ */
+@Component
+public class ChunkedImportEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedImportEngine.class);
+
+    private static final Future<ChunkResult> END_OF_FILE = CompletableFuture.completedFuture(null);
+
+    private final SockRepository sockRepository;
+    private final ImportStagingRepository stagingRepository;
+    private final ImportCheckpointRepository checkpointRepository;
+    private final MovementHistoryRepository movementHistory;
+    private final TransactionTemplate transactionTemplate;
+    private final SocksProperties.CommitMode commitMode;
+    private final int rowsPerChunk;
+    private final int queueCapacity;
+    private final ForkJoinPool workers;
+    private final ExecutorService writers;
+
+    public ChunkedImportEngine(SockRepository sockRepository,
+                               ImportStagingRepository stagingRepository,
+                               ImportCheckpointRepository checkpointRepository,
+                               MovementHistoryRepository movementHistory,
+                               TransactionTemplate transactionTemplate,
+                               SocksProperties properties) {
+        SocksProperties.Batch settings = properties.getBatch();
+        this.sockRepository = sockRepository;
+        this.stagingRepository = stagingRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.movementHistory = movementHistory;
+        this.transactionTemplate = transactionTemplate;
+        this.commitMode = settings.getCommitMode();
+        this.rowsPerChunk = settings.getRowsPerChunk();
+        this.queueCapacity = settings.getParallelism() * 2;
+        this.workers = new ForkJoinPool(settings.getParallelism());
+        AtomicInteger counter = new AtomicInteger();
+        this.writers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "socks-import-writer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Imports all rows of the stream.
+     *
+     * @param onCommitted receives the quantities of every committed chunk, or of the whole
+     *                    upload in staged mode
+     * @return number of rows read
+     */
+    public long importRows(InputStream inputStream, SockRowReader reader, BatchProgress progress,
+                           Consumer<Map<SockKey, Integer>> onCommitted) throws IOException {
+        return importRows(inputStream, reader, progress, null, onCommitted);
+    }
+
+    /**
+     * Imports the rows of the stream that were not applied by an earlier run with the same key.
+     * Only rows after the checkpoint are aggregated and written; a completed import returns at
+     * once and reports {@link BatchProgress#isAlreadyImported()}.
+     *
+     * @param importKey content hash or idempotency key, {@code null} for an import without checkpoints
+     * @return number of rows read
+     */
+    public long importRows(InputStream inputStream, SockRowReader reader, BatchProgress progress, String importKey,
+                           Consumer<Map<SockKey, Integer>> onCommitted) throws IOException {
+        long resumeAfter = 0;
+        if (importKey != null) {
+            ImportCheckpoint checkpoint = openCheckpoint(importKey);
+            if (checkpoint.getCompleted()) {
+                logger.info("Import {} was already applied, skipping it", importKey);
+                progress.alreadyImported(checkpoint.getRowsCommitted());
+                return 0;
+            }
+            resumeAfter = checkpoint.getRowsCommitted();
+            if (resumeAfter > 0) {
+                logger.info("Resuming import {} after row {}", importKey, resumeAfter);
+                progress.addRowsSkipped(resumeAfter);
+            }
+        }
+
+        String importId = UUID.randomUUID().toString();
+        long committedBefore = resumeAfter;
+        BlockingQueue<Future<ChunkResult>> pending = new ArrayBlockingQueue<>(queueCapacity);
+        Future<?> writer = writers.submit(() -> {
+            write(importId, importKey, committedBefore, pending, progress, onCommitted);
+            return null;
+        });
+
+        RowChunk[] current = {new RowChunk(rowsPerChunk)};
+        long[] toSkip = {resumeAfter};
+        try {
+            long rows = reader.read(inputStream, (rowNum, color, cottonPart, quantity) -> {
+                if (toSkip[0] > 0) {
+                    toSkip[0]--;
+                    return;
+                }
+                RowChunk chunk = current[0];
+                chunk.add(rowNum, color, cottonPart, quantity);
+                if (chunk.isFull()) {
+                    enqueue(pending, workers.submit(chunk::aggregate), writer);
+                    current[0] = new RowChunk(rowsPerChunk);
+                    progress.setRowsParsed(progress.getRowsParsed() + chunk.size);
+                }
+            });
+            if (current[0].size > 0) {
+                RowChunk chunk = current[0];
+                enqueue(pending, workers.submit(chunk::aggregate), writer);
+            }
+            if (rows < resumeAfter) {
+                throw new FileProcessingException("File has " + rows + " rows, but " + resumeAfter
+                        + " rows were already imported under the same key");
+            }
+            progress.setRowsParsed(rows);
+            enqueue(pending, END_OF_FILE, writer);
+            await(writer);
+            return rows;
+        } catch (IOException | RuntimeException e) {
+            writer.cancel(true);
+            progress.addRowsRejected(Math.max(0, progress.getRowsParsed() - progress.getRowsSkipped() - progress.getRowsApplied()));
+            if (commitMode == SocksProperties.CommitMode.STAGED) {
+                discardStaged(importId);
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+        writers.shutdown();
+    }
+
+    private void write(String importId, String importKey, long committedBefore, BlockingQueue<Future<ChunkResult>> pending,
+                       BatchProgress progress, Consumer<Map<SockKey, Integer>> onCommitted) throws Exception {
+        boolean staged = commitMode == SocksProperties.CommitMode.STAGED;
+        Map<SockKey, Integer> totals = new HashMap<>();
+        long stagedRows = 0;
+        long committedRows = committedBefore;
+        int chunks = 0;
+
+        while (true) {
+            Future<ChunkResult> next = pending.take();
+            if (next == END_OF_FILE) break;
+            ChunkResult chunk = unwrap(next);
+            if (staged) {
+                transactionTemplate.executeWithoutResult(status -> stagingRepository.stage(importId, chunk.quantities()));
+                chunk.quantities().forEach((key, quantity) -> totals.merge(key, quantity, Math::addExact));
+                stagedRows += chunk.rows();
+            } else {
+                long before = committedRows;
+                long after = before + chunk.rows();
+                transactionTemplate.executeWithoutResult(status -> {
+                    sockRepository.addQuantities(chunk.quantities());
+                    movementHistory.append(MovementSource.IMPORT, chunk.quantities(), Map.of());
+                    if (importKey != null && checkpointRepository.advance(importKey, before, after, Instant.now()) == 0) {
+                        throw concurrentRun(importKey);
+                    }
+                });
+                committedRows = after;
+                progress.addRowsApplied(chunk.rows());
+                onCommitted.accept(chunk.quantities());
+            }
+            chunks++;
+        }
+
+        if (staged) {
+            long total = committedBefore + stagedRows;
+            transactionTemplate.executeWithoutResult(status -> {
+                stagingRepository.merge(importId);
+                stagingRepository.delete(importId);
+                movementHistory.append(MovementSource.IMPORT, totals, Map.of());
+                complete(importKey, total);
+            });
+            progress.addRowsApplied(stagedRows);
+            onCommitted.accept(totals);
+        } else if (importKey != null) {
+            long total = committedRows;
+            transactionTemplate.executeWithoutResult(status -> complete(importKey, total));
+        }
+        logger.debug("Import {} wrote {} chunks in {} mode", importId, chunks, commitMode);
+    }
+
+    private ImportCheckpoint openCheckpoint(String importKey) {
+        return checkpointRepository.findById(importKey).orElseGet(() -> {
+            try {
+                return checkpointRepository.saveAndFlush(new ImportCheckpoint(importKey, 0L, false, Instant.now()));
+            } catch (DataIntegrityViolationException e) {
+                // Created by a concurrent run of the same import
+                return checkpointRepository.findById(importKey).orElseThrow(() -> e);
+            }
+        });
+    }
+
+    private void complete(String importKey, long rows) {
+        if (importKey != null && checkpointRepository.complete(importKey, rows, Instant.now()) == 0) {
+            throw concurrentRun(importKey);
+        }
+    }
+
+    private static ImportRejectedException concurrentRun(String importKey) {
+        return new ImportRejectedException("Import " + importKey + " is being applied by another upload.");
+    }
+
+    private void discardStaged(String importId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> stagingRepository.delete(importId));
+        } catch (RuntimeException e) {
+            logger.warn("Failed to discard staged rows of import {}", importId, e);
+        }
+    }
+
+    // Waits for space in the queue, failing fast if the writer has already stopped.
+    private static void enqueue(BlockingQueue<Future<ChunkResult>> pending, Future<ChunkResult> chunk, Future<?> writer) {
+        try {
+            while (!pending.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+                if (writer.isDone()) {
+                    await(writer);
+                    throw new IllegalStateException("Import writer stopped unexpectedly");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import was interrupted", e);
+        }
+    }
+
+    private static void await(Future<?> future) {
+        unwrap(future);
+    }
+
+    private static <T> T unwrap(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException("Import failed", e.getCause());
+        }
+    }
+
+    private record ChunkResult(Map<SockKey, Integer> quantities, int rows) {
+    }
+
+    /**
+     * Rows of one chunk in parallel arrays.
+     */
+    private static final class RowChunk {
+
+        private final int[] rowNums;
+        private final String[] colors;
+        private final int[] cottonParts;
+        private final int[] quantities;
+        private int size;
+
+        private RowChunk(int capacity) {
+            rowNums = new int[capacity];
+            colors = new String[capacity];
+            cottonParts = new int[capacity];
+            quantities = new int[capacity];
+        }
+
+        private void add(int rowNum, String color, int cottonPart, int quantity) {
+            rowNums[size] = rowNum;
+            colors[size] = color;
+            cottonParts[size] = cottonPart;
+            quantities[size] = quantity;
+            size++;
+        }
+
+        private boolean isFull() {
+            return size == rowNums.length;
+        }
+
+        private ChunkResult aggregate() {
+            BatchAggregator aggregator = new BatchAggregator();
+            for (int i = 0; i < size; i++) {
+                aggregator.onRow(rowNums[i], colors[i], cottonParts[i], quantities[i]);
+            }
+            // Sorted here on a worker, so the writer upserts rows in the order every other writer locks them in
+            Map<SockKey, Integer> sorted = new TreeMap<>(SockKey.KEY_ORDER);
+            sorted.putAll(aggregator.getQuantities());
+            return new ChunkResult(sorted, size);
+        }
+    }
+}
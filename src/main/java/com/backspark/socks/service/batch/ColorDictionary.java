@@ -0,0 +1,69 @@
+package com.backspark.socks.service.batch;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Interns color names read from bytes. Batch files repeat a handful of colors over and over,
+ * so after the first occurrence a color costs a hash and a byte comparison instead of a new
+ * String. Open addressing with linear probing; stops caching after {@link #MAX_SIZE} colors.
+ */
+final class ColorDictionary {
+
+    private static final int MAX_SIZE = 4096;
+
+    private byte[][] keys = new byte[64][];
+    private String[] values = new String[64];
+    private int[] hashes = new int[64];
+    private int size;
+
+    String lookup(byte[] buffer, int from, int to) {
+        int hash = hash(buffer, from, to);
+        int mask = keys.length - 1;
+        int index = hash & mask;
+        while (keys[index] != null) {
+            if (hashes[index] == hash && Arrays.equals(keys[index], 0, keys[index].length, buffer, from, to)) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        String value = new String(buffer, from, to - from, StandardCharsets.UTF_8);
+        if (size < MAX_SIZE) {
+            keys[index] = Arrays.copyOfRange(buffer, from, to);
+            values[index] = value;
+            hashes[index] = hash;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+        }
+        return value;
+    }
+
+    private void resize() {
+        byte[][] oldKeys = keys;
+        String[] oldValues = values;
+        int[] oldHashes = hashes;
+        keys = new byte[oldKeys.length * 2][];
+        values = new String[oldKeys.length * 2];
+        hashes = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) continue;
+            int index = oldHashes[i] & mask;
+            while (keys[index] != null) {
+                index = (index + 1) & mask;
+            }
+            keys[index] = oldKeys[i];
+            values[index] = oldValues[i];
+            hashes[index] = oldHashes[i];
+        }
+    }
+
+    private static int hash(byte[] buffer, int from, int to) {
+        int hash = 1;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
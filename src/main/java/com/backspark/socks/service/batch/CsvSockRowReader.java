@@ -0,0 +1,77 @@
+package com.backspark.socks.service.batch;
+
+/**
+ * Reads comma separated {@code color,cottonPart,quantity} lines.
+ * <p>
+ * The first line is treated as a header when its cotton part column is not a number.
+ * The color may be quoted, with {@code ""} standing for a quote inside it.
+ */
+public class CsvSockRowReader extends LineSockRowReader {
+
+    @Override
+    protected boolean parseLine(byte[] buffer, int from, int to, int lineNum,
+                                ColorDictionary colors, SockRowHandler handler) {
+        String color;
+        int pos;
+        if (buffer[from] == '"') {
+            StringBuilder quoted = new StringBuilder();
+            pos = from + 1;
+            while (true) {
+                if (pos >= to) throw invalid(lineNum, "unterminated quoted color");
+                if (buffer[pos] == '"') {
+                    if (pos + 1 < to && buffer[pos + 1] == '"') {
+                        quoted.append('"');
+                        pos += 2;
+                        continue;
+                    }
+                    pos++;
+                    break;
+                }
+                int run = pos;
+                while (pos < to && buffer[pos] != '"') pos++;
+                quoted.append(text(buffer, run, pos));
+            }
+            pos = skipWhitespace(buffer, pos, to);
+            if (pos == to || buffer[pos] != ',') throw invalid(lineNum, "expected color,cottonPart,quantity");
+            color = quoted.toString();
+        } else {
+            pos = indexOf(buffer, from, to, (byte) ',');
+            if (pos < 0) throw invalid(lineNum, "expected color,cottonPart,quantity");
+            color = colors.lookup(buffer, from, trimEnd(buffer, from, pos));
+        }
+
+        int cottonFrom = pos + 1;
+        int cottonTo = indexOf(buffer, cottonFrom, to, (byte) ',');
+        if (cottonTo < 0) throw invalid(lineNum, "expected color,cottonPart,quantity");
+        int quantityTo = indexOf(buffer, cottonTo + 1, to, (byte) ',');
+        if (quantityTo < 0) quantityTo = to;
+
+        if (lineNum == 0 && !isNumber(buffer, cottonFrom, cottonTo)) {
+            return false;
+        }
+        if (color.isEmpty()) throw invalid(lineNum, "color is empty");
+
+        int cottonPart = parseInt(buffer, cottonFrom, cottonTo, lineNum);
+        int quantity = parseInt(buffer, cottonTo + 1, quantityTo, lineNum);
+        handler.onRow(lineNum, color, cottonPart, quantity);
+        return true;
+    }
+
+    private static int indexOf(byte[] buffer, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == value) return i;
+        }
+        return -1;
+    }
+
+    private static boolean isNumber(byte[] buffer, int from, int to) {
+        from = skipWhitespace(buffer, from, to);
+        to = trimEnd(buffer, from, to);
+        if (from < to && (buffer[from] == '-' || buffer[from] == '+')) from++;
+        if (from == to) return false;
+        for (int i = from; i < to; i++) {
+            if ((buffer[i] < '0' || buffer[i] > '9') && buffer[i] != '.') return false;
+        }
+        return true;
+    }
+}
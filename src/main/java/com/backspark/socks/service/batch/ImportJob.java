@@ -0,0 +1,108 @@
+package com.backspark.socks.service.batch;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * State of an asynchronous batch upload.
+ */
+public class ImportJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        SUCCEEDED,
+        FAILED
+    }
+
+    private final String id;
+    private final String fileName;
+    private final String importKey;
+    private final Instant createdAt = Instant.now();
+    private final BatchProgress progress = new BatchProgress();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    public ImportJob(String id, String fileName) {
+        this(id, fileName, null);
+    }
+
+    public ImportJob(String id, String fileName, String importKey) {
+        this.id = id;
+        this.fileName = fileName;
+        this.importKey = importKey;
+    }
+
+    public void started() {
+        startedAt = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    public void succeeded() {
+        finishedAt = Instant.now();
+        status = Status.SUCCEEDED;
+    }
+
+    public void failed(String error) {
+        this.error = error;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    /**
+     * @return parsed rows per second while the job was running
+     */
+    public double getRowsPerSecond() {
+        Instant start = startedAt;
+        if (start == null) return 0;
+        Instant end = finishedAt != null ? finishedAt : Instant.now();
+        long millis = Math.max(Duration.between(start, end).toMillis(), 1);
+        return progress.getRowsParsed() * 1000.0 / millis;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return content hash or idempotency key of the upload, {@code null} if it has none
+     */
+    public String getImportKey() {
+        return importKey;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public BatchProgress getProgress() {
+        return progress;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
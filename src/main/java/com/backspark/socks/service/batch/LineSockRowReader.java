@@ -0,0 +1,123 @@
+package com.backspark.socks.service.batch;
+
+import com.backspark.socks.exception.FileProcessingException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Base of the text formats with one record per line.
+ * <p>
+ * Reads the stream into a reusable byte buffer and hands every line to {@link #parseLine}
+ * as a range of that buffer, so no line strings or readers are created. The buffer only
+ * grows for a line longer than it.
+ */
+abstract class LineSockRowReader implements SockRowReader {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Override
+    public long read(InputStream inputStream, SockRowHandler handler) throws IOException {
+        ColorDictionary colors = new ColorDictionary();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int start = 0;
+        int scan = 0;
+        int end = 0;
+        int lineNum = 0;
+        long rows = 0;
+
+        while (true) {
+            int newline = -1;
+            for (int i = scan; i < end; i++) {
+                if (buffer[i] == '\n') {
+                    newline = i;
+                    break;
+                }
+            }
+            if (newline >= 0) {
+                if (parse(buffer, start, newline, lineNum++, colors, handler)) rows++;
+                start = newline + 1;
+                scan = start;
+                continue;
+            }
+            scan = end;
+
+            if (start > 0) {
+                System.arraycopy(buffer, start, buffer, 0, end - start);
+                end -= start;
+                scan -= start;
+                start = 0;
+            }
+            if (end == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int read = inputStream.read(buffer, end, buffer.length - end);
+            if (read < 0) {
+                if (end > start && parse(buffer, start, end, lineNum, colors, handler)) rows++;
+                return rows;
+            }
+            end += read;
+        }
+    }
+
+    private boolean parse(byte[] buffer, int from, int to, int lineNum, ColorDictionary colors, SockRowHandler handler) {
+        if (to > from && buffer[to - 1] == '\r') to--;
+        from = skipWhitespace(buffer, from, to);
+        if (from == to) return false;
+        return parseLine(buffer, from, to, lineNum, colors, handler);
+    }
+
+    /**
+     * Parses a non-blank line without the line terminator.
+     *
+     * @param lineNum zero-based line number, used as the row number
+     * @return {@code true} if a row was passed to the handler
+     */
+    protected abstract boolean parseLine(byte[] buffer, int from, int to, int lineNum,
+                                         ColorDictionary colors, SockRowHandler handler);
+
+    static int skipWhitespace(byte[] buffer, int from, int to) {
+        while (from < to && (buffer[from] == ' ' || buffer[from] == '\t')) from++;
+        return from;
+    }
+
+    static int trimEnd(byte[] buffer, int from, int to) {
+        while (to > from && (buffer[to - 1] == ' ' || buffer[to - 1] == '\t')) to--;
+        return to;
+    }
+
+    /**
+     * Parses an integer with an optional sign. A fractional part is accepted only if it is zero,
+     * like in numeric .xlsx cells.
+     */
+    static int parseInt(byte[] buffer, int from, int to, int lineNum) {
+        from = skipWhitespace(buffer, from, to);
+        to = trimEnd(buffer, from, to);
+        boolean negative = from < to && buffer[from] == '-';
+        int i = negative || (from < to && buffer[from] == '+') ? from + 1 : from;
+        if (i == to) throw invalid(lineNum, "missing numeric value");
+
+        long value = 0;
+        for (; i < to && buffer[i] != '.'; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) throw invalid(lineNum, "'" + text(buffer, from, to) + "' is not a number");
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE) throw invalid(lineNum, "number is too large");
+        }
+        for (i = i + 1; i < to; i++) {
+            if (buffer[i] < '0' || buffer[i] > '9') throw invalid(lineNum, "'" + text(buffer, from, to) + "' is not a number");
+            if (buffer[i] != '0') throw invalid(lineNum, "'" + text(buffer, from, to) + "' is not an integer");
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    static FileProcessingException invalid(int lineNum, String reason) {
+        return new FileProcessingException("Invalid row " + (lineNum + 1) + ": " + reason);
+    }
+
+    static String text(byte[] buffer, int from, int to) {
+        return new String(buffer, from, to - from, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,135 @@
+package com.backspark.socks.service.batch;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads one JSON object per line, e.g. {@code {"color":"red","cottonPart":50,"quantity":10}}.
+ * <p>
+ * A small parser for flat objects working directly on the line bytes: keys are compared as
+ * bytes and numbers are parsed in place, so only the color name can cost an allocation.
+ * Unknown keys with string, number, boolean or null values are skipped.
+ */
+public class NdjsonSockRowReader extends LineSockRowReader {
+
+    private static final byte[] COLOR = "color".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] COTTON_PART = "cottonPart".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] QUANTITY = "quantity".getBytes(StandardCharsets.US_ASCII);
+
+    @Override
+    protected boolean parseLine(byte[] buffer, int from, int to, int lineNum,
+                                ColorDictionary colors, SockRowHandler handler) {
+        to = trimEnd(buffer, from, to);
+        if (buffer[from] != '{' || buffer[to - 1] != '}') {
+            throw invalid(lineNum, "expected a JSON object");
+        }
+
+        String color = null;
+        int cottonPart = -1;
+        int quantity = -1;
+        boolean hasCottonPart = false;
+        boolean hasQuantity = false;
+
+        int pos = skipWhitespace(buffer, from + 1, to - 1);
+        int end = to - 1;
+        while (pos < end) {
+            if (buffer[pos] != '"') throw invalid(lineNum, "expected a key");
+            int keyFrom = pos + 1;
+            int keyTo = closingQuote(buffer, keyFrom, end, lineNum);
+            pos = skipWhitespace(buffer, keyTo + 1, end);
+            if (pos == end || buffer[pos] != ':') throw invalid(lineNum, "expected ':'");
+            pos = skipWhitespace(buffer, pos + 1, end);
+            if (pos == end) throw invalid(lineNum, "missing value");
+
+            int valueTo;
+            if (buffer[pos] == '"') {
+                valueTo = closingQuote(buffer, pos + 1, end, lineNum);
+                if (isKey(buffer, keyFrom, keyTo, COLOR)) {
+                    color = string(buffer, pos + 1, valueTo, colors, lineNum);
+                }
+                valueTo++;
+            } else {
+                valueTo = pos;
+                while (valueTo < end && buffer[valueTo] != ',' && buffer[valueTo] != ' ' && buffer[valueTo] != '\t') {
+                    valueTo++;
+                }
+                if (isKey(buffer, keyFrom, keyTo, COTTON_PART)) {
+                    cottonPart = parseInt(buffer, pos, valueTo, lineNum);
+                    hasCottonPart = true;
+                } else if (isKey(buffer, keyFrom, keyTo, QUANTITY)) {
+                    quantity = parseInt(buffer, pos, valueTo, lineNum);
+                    hasQuantity = true;
+                } else if (buffer[pos] == '{' || buffer[pos] == '[') {
+                    throw invalid(lineNum, "nested values are not supported");
+                }
+            }
+
+            pos = skipWhitespace(buffer, valueTo, end);
+            if (pos < end) {
+                if (buffer[pos] != ',') throw invalid(lineNum, "expected ','");
+                pos = skipWhitespace(buffer, pos + 1, end);
+            }
+        }
+
+        if (color == null || color.isEmpty()) throw invalid(lineNum, "color is missing");
+        if (!hasCottonPart) throw invalid(lineNum, "cottonPart is missing");
+        if (!hasQuantity) throw invalid(lineNum, "quantity is missing");
+        handler.onRow(lineNum, color, cottonPart, quantity);
+        return true;
+    }
+
+    private static int closingQuote(byte[] buffer, int from, int to, int lineNum) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == '\\') {
+                i++;
+            } else if (buffer[i] == '"') {
+                return i;
+            }
+        }
+        throw invalid(lineNum, "unterminated string");
+    }
+
+    private static boolean isKey(byte[] buffer, int from, int to, byte[] key) {
+        return Arrays.equals(buffer, from, to, key, 0, key.length);
+    }
+
+    private static String string(byte[] buffer, int from, int to, ColorDictionary colors, int lineNum) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == '\\') return unescape(buffer, from, to, lineNum);
+        }
+        return colors.lookup(buffer, from, to);
+    }
+
+    private static String unescape(byte[] buffer, int from, int to, int lineNum) {
+        String raw = text(buffer, from, to);
+        StringBuilder result = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c != '\\') {
+                result.append(c);
+                continue;
+            }
+            if (++i == raw.length()) throw invalid(lineNum, "invalid escape");
+            char escaped = raw.charAt(i);
+            switch (escaped) {
+                case '"', '\\', '/' -> result.append(escaped);
+                case 'b' -> result.append('\b');
+                case 'f' -> result.append('\f');
+                case 'n' -> result.append('\n');
+                case 'r' -> result.append('\r');
+                case 't' -> result.append('\t');
+                case 'u' -> {
+                    if (i + 5 > raw.length()) throw invalid(lineNum, "invalid escape");
+                    try {
+                        result.append((char) Integer.parseInt(raw, i + 1, i + 5, 16));
+                    } catch (NumberFormatException e) {
+                        throw invalid(lineNum, "invalid escape");
+                    }
+                    i += 4;
+                }
+                default -> throw invalid(lineNum, "invalid escape");
+            }
+        }
+        return result.toString();
+    }
+}
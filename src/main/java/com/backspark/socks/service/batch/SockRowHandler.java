@@ -0,0 +1,16 @@
+package com.backspark.socks.service.batch;
+
+/**
+ * Receives rows parsed from a batch file one at a time.
+ */
+@FunctionalInterface
+public interface SockRowHandler {
+
+    /**
+     * @param rowNum     zero-based row number in the source file
+     * @param color      color of the socks
+     * @param cottonPart percentage of cotton
+     * @param quantity   number of socks in the row
+     */
+    void onRow(int rowNum, String color, int cottonPart, int quantity);
+}
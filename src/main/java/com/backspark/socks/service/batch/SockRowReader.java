@@ -0,0 +1,18 @@
+package com.backspark.socks.service.batch;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Parses sock rows from a batch file and passes them to a {@link SockRowHandler}.
+ * The header row is skipped by the reader.
+ */
+public interface SockRowReader {
+
+    /**
+     * Reads all rows of the stream.
+     *
+     * @return number of data rows read
+     */
+    long read(InputStream inputStream, SockRowHandler handler) throws IOException;
+}
@@ -0,0 +1,24 @@
+package com.backspark.socks.service.batch;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Row readers of all supported batch formats.
+ */
+public class SockRowReaders {
+
+    private final Map<BatchFormat, SockRowReader> readers;
+
+    public SockRowReaders(Map<BatchFormat, SockRowReader> readers) {
+        this.readers = new EnumMap<>(readers);
+    }
+
+    public SockRowReader get(BatchFormat format) {
+        SockRowReader reader = readers.get(format);
+        if (reader == null) {
+            throw new IllegalArgumentException("No reader for format " + format);
+        }
+        return reader;
+    }
+}
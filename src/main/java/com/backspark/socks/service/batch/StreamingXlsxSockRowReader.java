@@ -0,0 +1,178 @@
+package com.backspark.socks.service.batch;
+
+import com.backspark.socks.exception.FileProcessingException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.NumberToTextConverter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+
+/**
+ * Reads the first sheet of an .xlsx file with the POI event API.
+ * <p>
+ * The sheet XML is parsed with SAX and every row is handed over as soon as it ends, so the
+ * heap used does not grow with the number of rows. The zip container needs random access,
+ * therefore the stream is spooled to a temporary file first. Only the shared strings table
+ * is kept in memory; in our files it holds just the color names.
+ */
+public class StreamingXlsxSockRowReader implements SockRowReader {
+
+    @Override
+    public long read(InputStream inputStream, SockRowHandler handler) throws IOException {
+        Path tempFile = Files.createTempFile("socks-batch-", ".xlsx");
+        try {
+            Files.copy(inputStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            return read(tempFile, handler);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    public long read(Path file, SockRowHandler handler) throws IOException {
+        OPCPackage pkg = null;
+        try {
+            pkg = OPCPackage.open(file.toFile(), PackageAccess.READ);
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return 0;
+            }
+
+            RowCollector collector = new RowCollector(handler);
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(
+                        styles, strings, collector, new RawNumberFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            }
+            return collector.rows;
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Failed to read the .xlsx file", e);
+        } finally {
+            if (pkg != null) {
+                // close() would try to save a read-only package
+                pkg.revert();
+            }
+        }
+    }
+
+    /**
+     * Collects the first three cells of the current row and emits them when the row ends.
+     */
+    private static final class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final SockRowHandler handler;
+
+        private String color;
+        private String cottonPart;
+        private String quantity;
+        private int nextColumn;
+        private long rows;
+
+        private RowCollector(SockRowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            color = null;
+            cottonPart = null;
+            quantity = null;
+            nextColumn = 0;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (rowNum == 0) return;
+            if (color == null && cottonPart == null && quantity == null) return;
+
+            if (color == null || color.isBlank()) {
+                throw new FileProcessingException("Invalid row " + (rowNum + 1) + ": color is missing");
+            }
+            handler.onRow(rowNum, color, parseInt(cottonPart, rowNum), parseInt(quantity, rowNum));
+            rows++;
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference != null ? columnIndex(cellReference) : nextColumn;
+            nextColumn = column + 1;
+            switch (column) {
+                case 0 -> color = formattedValue;
+                case 1 -> cottonPart = formattedValue;
+                case 2 -> quantity = formattedValue;
+                default -> {
+                }
+            }
+        }
+
+        private static int columnIndex(String cellReference) {
+            int column = 0;
+            for (int i = 0; i < cellReference.length(); i++) {
+                char c = cellReference.charAt(i);
+                if (c < 'A' || c > 'Z') break;
+                column = column * 26 + (c - 'A' + 1);
+            }
+            return column - 1;
+        }
+
+        private static int parseInt(String value, int rowNum) {
+            if (value == null || value.isBlank()) {
+                throw new FileProcessingException("Invalid row " + (rowNum + 1) + ": missing numeric value");
+            }
+            double number;
+            try {
+                number = Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                throw new FileProcessingException("Invalid row " + (rowNum + 1) + ": '" + value + "' is not a number");
+            }
+            return toInt(number, rowNum);
+        }
+    }
+
+    /**
+     * Converts a numeric cell value, rejecting fractions and values outside the int range
+     * instead of truncating them.
+     */
+    static int toInt(double value, int rowNum) {
+        if (value != Math.rint(value)) {
+            throw new FileProcessingException("Invalid row " + (rowNum + 1) + ": " + NumberToTextConverter.toText(value) + " is not an integer");
+        }
+        if (value > Integer.MAX_VALUE || value < Integer.MIN_VALUE) {
+            throw new FileProcessingException("Invalid row " + (rowNum + 1) + ": number is too large");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Hands numeric cells over as their raw value, so a display format such as "1,000", a
+     * percentage or a rounded "12.7" does not change the number that is imported.
+     */
+    private static final class RawNumberFormatter extends DataFormatter {
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+            return NumberToTextConverter.toText(value);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.backspark.socks.service.batch;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads .xlsx files through the POI user model. The whole workbook is kept in memory,
+ * so use it only for small files.
+ */
+public class WorkbookXlsxSockRowReader implements SockRowReader {
+
+    @Override
+    public long read(InputStream inputStream, SockRowHandler handler) throws IOException {
+        long rows = 0;
+        try (Workbook workbook = new XSSFWorkbook(inputStream)) {
+            Sheet sheet = workbook.getSheetAt(0);
+
+            for (Row row : sheet) {
+                if (row.getRowNum() == 0) continue;
+
+                String color = row.getCell(0).getStringCellValue();
+                int cottonPart = StreamingXlsxSockRowReader.toInt(row.getCell(1).getNumericCellValue(), row.getRowNum());
+                int quantity = StreamingXlsxSockRowReader.toInt(row.getCell(2).getNumericCellValue(), row.getRowNum());
+
+                handler.onRow(row.getRowNum(), color, cottonPart, quantity);
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
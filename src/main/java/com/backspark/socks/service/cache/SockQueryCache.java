@@ -0,0 +1,258 @@
+package com.backspark.socks.service.cache;
+
+import com.backspark.socks.config.SocksProperties;
+import com.backspark.socks.dto.CottonOperator;
+import com.backspark.socks.model.Sock;
+import com.backspark.socks.model.SockKey;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-memory cache of listing pages and totals.
+ * <p>
+ * Writes invalidate only the entries whose filters can match a changed (color, cottonPart).
+ * Entries are indexed by their color filter, so an invalidation looks at the entries of the
+ * changed colors and at those without a color filter, never at the whole cache.
+ * <p>
+ * Every color has a generation that writes bump before they invalidate, entries without a color
+ * filter use one shared by all colors. A loaded result is stamped with the generation read before
+ * the load and is put only if it is still current, checked and put in one atomic step per entry.
+ * So a read that raced with an invalidation cannot put a stale value back. Hit, miss and eviction
+ * counts are published as {@code cache.*} metrics.
+ */
+@Component
+public class SockQueryCache {
+
+    private final boolean enabled;
+    private final Region<ListingKey, Page<Sock>> listings;
+    private final Region<TotalKey, Long> totals;
+    private final ConcurrentHashMap<String, AtomicLong> colorGenerations = new ConcurrentHashMap<>();
+    private final AtomicLong allColorsGeneration = new AtomicLong();
+
+    public SockQueryCache(SocksProperties properties, MeterRegistry meterRegistry) {
+        SocksProperties.Cache settings = properties.getCache();
+        this.enabled = settings.isEnabled();
+        this.listings = new Region<>(settings.getMaxListings(), settings.getTtl());
+        this.totals = new Region<>(settings.getMaxTotals(), settings.getTtl());
+        CaffeineCacheMetrics.monitor(meterRegistry, listings.cache, "socks.listings");
+        CaffeineCacheMetrics.monitor(meterRegistry, totals.cache, "socks.totals");
+    }
+
+    public Page<Sock> getListing(String color, Integer cottonPartMin, Integer cottonPartMax, Pageable pageable,
+                                 Supplier<Page<Sock>> loader) {
+        return get(listings, new ListingKey(color, cottonPartMin, cottonPartMax, pageable), loader);
+    }
+
+    public long getTotal(String color, CottonOperator operator, Integer cottonPart, Integer cottonPartMin, Integer cottonPartMax,
+                         Supplier<Long> loader) {
+        return get(totals, TotalKey.of(color, operator, cottonPart, cottonPartMin, cottonPartMax), loader);
+    }
+
+    public void invalidate(SockKey key) {
+        invalidate(List.of(key));
+    }
+
+    /**
+     * Removes the entries that can include any of the changed sock items.
+     */
+    public void invalidate(Collection<SockKey> keys) {
+        if (!enabled || keys.isEmpty()) return;
+
+        Map<String, BitSet> changed = new HashMap<>();
+        for (SockKey key : keys) {
+            changed.computeIfAbsent(key.color(), color -> new BitSet(101)).set(key.cottonPart());
+        }
+        // Generations first: a load that misses the removal below is then refused its put
+        allColorsGeneration.incrementAndGet();
+        for (String color : changed.keySet()) {
+            colorGenerations.computeIfAbsent(color, c -> new AtomicLong()).incrementAndGet();
+        }
+        listings.invalidate(changed);
+        totals.invalidate(changed);
+    }
+
+    private <K extends QueryKey, V> V get(Region<K, V> region, K key, Supplier<V> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Stamped<V> cached = region.cache.getIfPresent(key);
+        if (cached != null) {
+            return cached.value();
+        }
+        long stamp = generation(key.color());
+        V value = loader.get();
+        region.putIfCurrent(key, new Stamped<>(value, stamp));
+        return value;
+    }
+
+    // A color never written has generation 0; the map only grows with colors that were written
+    private long generation(String color) {
+        if (color == null) {
+            return allColorsGeneration.get();
+        }
+        AtomicLong generation = colorGenerations.get(color);
+        return generation != null ? generation.get() : 0;
+    }
+
+    /**
+     * One cache with its index of keys by color filter. The index is changed only while the
+     * cache holds the lock of the entry, so the two never disagree about a key.
+     */
+    private final class Region<K extends QueryKey, V> {
+
+        private final Cache<K, Stamped<V>> cache;
+        private final ConcurrentHashMap<String, Set<K>> byColor = new ConcurrentHashMap<>();
+        private final Set<K> allColors = ConcurrentHashMap.newKeySet();
+
+        private Region(long maximumSize, Duration ttl) {
+            this.cache = Caffeine.newBuilder()
+                    .maximumSize(maximumSize)
+                    .expireAfterWrite(ttl)
+                    // Runs inside the eviction of the entry, unlike a removal listener
+                    .evictionListener((K key, Stamped<V> value, RemovalCause cause) -> unindex(key))
+                    .recordStats()
+                    .build();
+        }
+
+        void putIfCurrent(K key, Stamped<V> loaded) {
+            cache.asMap().compute(key, (k, existing) -> {
+                // Indexed before the check: an invalidation bumping the generation after the
+                // check finds the key and removes the entry again
+                index(k);
+                if (generation(k.color()) == loaded.stamp()) {
+                    return loaded;
+                }
+                if (existing == null) {
+                    unindex(k);
+                }
+                return existing;
+            });
+        }
+
+        void invalidate(Map<String, BitSet> changed) {
+            for (String color : changed.keySet()) {
+                Set<K> keys = byColor.get(color);
+                if (keys != null) {
+                    removeMatching(keys, changed);
+                }
+            }
+            removeMatching(allColors, changed);
+        }
+
+        private void removeMatching(Set<K> keys, Map<String, BitSet> changed) {
+            for (K key : keys) {
+                if (key.matches(changed)) {
+                    cache.asMap().compute(key, (k, existing) -> {
+                        unindex(k);
+                        return null;
+                    });
+                }
+            }
+        }
+
+        private void index(K key) {
+            if (key.color() == null) {
+                allColors.add(key);
+            } else {
+                byColor.computeIfAbsent(key.color(), color -> ConcurrentHashMap.newKeySet()).add(key);
+            }
+        }
+
+        private void unindex(K key) {
+            if (key.color() == null) {
+                allColors.remove(key);
+            } else {
+                byColor.computeIfPresent(key.color(), (color, keys) -> {
+                    keys.remove(key);
+                    return keys.isEmpty() ? null : keys;
+                });
+            }
+        }
+    }
+
+    private record Stamped<V>(V value, long stamp) {
+    }
+
+    private interface QueryKey {
+
+        String color();
+
+        boolean matches(Map<String, BitSet> changed);
+    }
+
+    private static boolean matches(Map<String, BitSet> changed, String color, int cottonPartMin, int cottonPartMax) {
+        int min = Math.max(cottonPartMin, 0);
+        int max = Math.min(cottonPartMax, 100);
+        if (color != null) {
+            return intersects(changed.get(color), min, max);
+        }
+        for (BitSet cottonParts : changed.values()) {
+            if (intersects(cottonParts, min, max)) return true;
+        }
+        return false;
+    }
+
+    private static boolean intersects(BitSet cottonParts, int min, int max) {
+        if (cottonParts == null || min > max) return false;
+        int next = cottonParts.nextSetBit(min);
+        return next != -1 && next <= max;
+    }
+
+    private record ListingKey(String color, Integer cottonPartMin, Integer cottonPartMax, Pageable pageable) implements QueryKey {
+
+        @Override
+        public boolean matches(Map<String, BitSet> changed) {
+            return SockQueryCache.matches(changed, color,
+                    cottonPartMin != null ? cottonPartMin : 0,
+                    cottonPartMax != null ? cottonPartMax : 100);
+        }
+    }
+
+    /**
+     * The operator and the range of a total narrowed to one interval of cotton parts, clamped to
+     * 0 .. 100 like {@link com.backspark.socks.service.index.StockIndex#sum}. Equal intervals share an entry.
+     */
+    private record TotalKey(String color, int cottonPartMin, int cottonPartMax) implements QueryKey {
+
+        static TotalKey of(String color, CottonOperator operator, Integer cottonPart, Integer cottonPartMin, Integer cottonPartMax) {
+            long min = cottonPartMin != null ? cottonPartMin : 0;
+            long max = cottonPartMax != null ? cottonPartMax : 100;
+            if (operator != null) {
+                switch (operator) {
+                    case MORE_THAN -> min = Math.max(min, cottonPart + 1L);
+                    case LESS_THAN -> max = Math.min(max, cottonPart - 1L);
+                    case EQUAL -> {
+                        min = Math.max(min, cottonPart);
+                        max = Math.min(max, cottonPart);
+                    }
+                }
+            }
+            // Any empty interval is the same query
+            int low = Math.clamp(min, 0, 101);
+            int high = Math.clamp(max, -1, 100);
+            return low > high ? new TotalKey(color, 1, 0) : new TotalKey(color, low, high);
+        }
+
+        @Override
+        public boolean matches(Map<String, BitSet> changed) {
+            return SockQueryCache.matches(changed, color, cottonPartMin, cottonPartMax);
+        }
+    }
+}
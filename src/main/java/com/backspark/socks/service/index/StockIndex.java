@@ -0,0 +1,173 @@
+package com.backspark.socks.service.index;
+
+import com.backspark.socks.model.SockKey;
+import com.backspark.socks.repository.SockRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * In-memory index of the stock answering quantity sums without the database.
+ * <p>
+ * The cotton part has only 101 values, so every color keeps the prefix sums of its quantities
+ * in a {@code long[102]}: the sum of any cotton range is the difference of two entries. Colors
+ * are interned to ints indexing these arrays, one more array holds the sums over all colors.
+ * A write adds its delta to the affected prefix entries, at most 101 per item.
+ * <p>
+ * Readers take an optimistic stamp and retry only if a write overlapped, so queries neither
+ * block nor allocate. The index is loaded after all singletons are initialized, i.e. after the
+ * write-behind recovery and before the web server accepts requests, and is then kept in sync by
+ * {@code SockService}. Like write-behind mode it needs to be the only application instance
+ * writing to the database.
+ */
+@Component
+@ConditionalOnProperty(prefix = "socks.index", name = "enabled", havingValue = "true")
+public class StockIndex implements SmartInitializingSingleton {
+
+    public static final int MAX_COTTON_PART = 100;
+
+    private static final Logger logger = LoggerFactory.getLogger(StockIndex.class);
+
+    private static final int SLOTS = MAX_COTTON_PART + 2;
+
+    private final SockRepository sockRepository;
+    private final ConcurrentHashMap<String, Integer> colorIds = new ConcurrentHashMap<>();
+    private final StampedLock lock = new StampedLock();
+    // Entry i of a color holds the quantity of cotton parts 0 .. i - 1
+    private volatile long[][] prefixSums = new long[16][];
+    private final long[] allColors = new long[SLOTS];
+
+    public StockIndex(SockRepository sockRepository) {
+        this.sockRepository = sockRepository;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        load();
+    }
+
+    /**
+     * Replaces the content of the index with the stock in the database.
+     */
+    public void load() {
+        long start = System.nanoTime();
+        Map<SockKey, Integer> quantities = new HashMap<>();
+        long items;
+        try {
+            items = sockRepository.exportSocks(null, null, null,
+                    (color, cottonPart, quantity) -> quantities.put(new SockKey(color, cottonPart), quantity));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long stamp = lock.writeLock();
+        try {
+            colorIds.clear();
+            prefixSums = new long[16][];
+            Arrays.fill(allColors, 0);
+            quantities.forEach(this::add);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        logger.info("Loaded {} sock items of {} colors into the stock index in {} ms",
+                items, colorIds.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Adds committed quantity changes, negative for outcomes.
+     */
+    public void apply(Map<SockKey, Integer> deltas) {
+        long stamp = lock.writeLock();
+        try {
+            deltas.forEach(this::add);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void apply(SockKey key, int delta) {
+        long stamp = lock.writeLock();
+        try {
+            add(key, delta);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Sums the quantity of the color, or of all colors, over the cotton parts {@code from .. to}.
+     * Bounds outside 0 .. 100 are clamped.
+     *
+     * @param color {@code null} for all colors
+     * @return 0 for an unknown color or an empty range
+     */
+    public long sum(String color, int from, int to) {
+        int low = Math.max(from, 0);
+        int high = Math.min(to, MAX_COTTON_PART);
+        if (low > high) return 0;
+
+        long stamp = lock.tryOptimisticRead();
+        long sum = read(color, low, high);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                sum = read(color, low, high);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return sum;
+    }
+
+    // Without a lock this may see a half-written state, the caller validates the stamp
+    private long read(String color, int low, int high) {
+        long[] prefix = allColors;
+        if (color != null) {
+            Integer id = colorIds.get(color);
+            long[][] arrays = prefixSums;
+            if (id == null || id >= arrays.length || arrays[id] == null) return 0;
+            prefix = arrays[id];
+        }
+        return prefix[high + 1] - prefix[low];
+    }
+
+    // Must be called holding the write lock
+    private void add(SockKey key, int delta) {
+        int cottonPart = key.cottonPart();
+        if (cottonPart < 0 || cottonPart > MAX_COTTON_PART) {
+            throw new IllegalArgumentException("Cotton part out of range: " + cottonPart);
+        }
+        long[] prefix = prefixSums(key.color());
+        for (int i = cottonPart + 1; i < SLOTS; i++) {
+            prefix[i] += delta;
+            allColors[i] += delta;
+        }
+    }
+
+    // Must be called holding the write lock
+    private long[] prefixSums(String color) {
+        Integer id = colorIds.get(color);
+        if (id != null) {
+            return prefixSums[id];
+        }
+        int newId = colorIds.size();
+        long[][] arrays = prefixSums;
+        if (newId == arrays.length) {
+            arrays = Arrays.copyOf(arrays, arrays.length * 2);
+        }
+        arrays[newId] = new long[SLOTS];
+        prefixSums = arrays;
+        // Published after the array, so a reader that finds the id also finds its array
+        colorIds.put(color, newId);
+        return arrays[newId];
+    }
+}
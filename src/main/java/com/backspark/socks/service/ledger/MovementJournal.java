@@ -0,0 +1,215 @@
+package com.backspark.socks.service.ledger;
+
+import com.backspark.socks.model.SockKey;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of stock movements split into numbered segment files.
+ * <p>
+ * A record is {@code [short colorLength][color UTF-8][int cottonPart][int delta]}. A record
+ * torn by a crash can only be the last one of a segment and is ignored on reading.
+ */
+public class MovementJournal implements Closeable {
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final boolean fsync;
+    private final ByteBuffer buffer = ByteBuffer.allocate(512);
+    // Not a monitor: appends block on fsync, which would pin the carrier of a virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private FileChannel channel;
+    private long segment;
+    private long records;
+
+    public MovementJournal(Path directory, boolean fsync) {
+        this.directory = directory;
+        this.fsync = fsync;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create journal directory " + directory, e);
+        }
+    }
+
+    /**
+     * Opens a new segment for writing. Must be called once before {@link #append}.
+     */
+    public void start(long firstSegment) {
+        lock.lock();
+        try {
+            segment = firstSegment;
+            open();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void append(SockKey key, int delta) {
+        lock.lock();
+        try {
+            byte[] color = key.color().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer record = color.length + 10 <= buffer.capacity()
+                    ? buffer.clear()
+                    : ByteBuffer.allocate(color.length + 10);
+            record.putShort((short) color.length).put(color).putInt(key.cottonPart()).putInt(delta).flip();
+            try {
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+                if (fsync) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot write to the movement journal", e);
+            }
+            records++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return {@code true} if nothing was appended to the current segment
+     */
+    public boolean isCurrentSegmentEmpty() {
+        lock.lock();
+        try {
+            return records == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Seals the current segment and continues in a new one.
+     *
+     * @return sequence number of the sealed segment
+     */
+    public long roll() {
+        lock.lock();
+        try {
+            long sealed = segment;
+            closeChannel();
+            segment++;
+            open();
+            return sealed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return sequence numbers of the segments on disk in ascending order
+     */
+    public List<Long> segments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list journal segments in " + directory, e);
+        }
+    }
+
+    /**
+     * Passes every complete record of the segment to the consumer.
+     */
+    public void read(long segmentNumber, BiConsumer<SockKey, Integer> consumer) {
+        try (InputStream in = Files.newInputStream(path(segmentNumber));
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            while (true) {
+                SockKey key;
+                int delta;
+                try {
+                    byte[] color = new byte[data.readShort()];
+                    data.readFully(color);
+                    key = new SockKey(new String(color, StandardCharsets.UTF_8), data.readInt());
+                    delta = data.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                consumer.accept(key, delta);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read journal segment " + segmentNumber, e);
+        }
+    }
+
+    /**
+     * Removes all sealed segments up to and including the given one.
+     */
+    public void deleteUpTo(long segmentNumber) {
+        List<Long> obsolete = new ArrayList<>();
+        for (Long existing : segments()) {
+            if (existing <= segmentNumber) {
+                obsolete.add(existing);
+            }
+        }
+        try {
+            for (Long existing : obsolete) {
+                Files.deleteIfExists(path(existing));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete journal segments up to " + segmentNumber, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closeChannel();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void open() {
+        try {
+            channel = FileChannel.open(path(segment),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            records = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open journal segment " + segment, e);
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close journal segment " + segment, e);
+        } finally {
+            channel = null;
+        }
+    }
+
+    private Path path(long segmentNumber) {
+        return directory.resolve(PREFIX + String.format("%019d", segmentNumber) + SUFFIX);
+    }
+}
@@ -0,0 +1,435 @@
+package com.backspark.socks.service.ledger;
+
+import com.backspark.socks.config.SocksProperties;
+import com.backspark.socks.exception.InsufficientSocksException;
+import com.backspark.socks.exception.InvalidRequestException;
+import com.backspark.socks.model.LedgerCheckpoint;
+import com.backspark.socks.model.MovementSource;
+import com.backspark.socks.model.SockKey;
+import com.backspark.socks.repository.LedgerCheckpointRepository;
+import com.backspark.socks.repository.MovementHistoryRepository;
+import com.backspark.socks.repository.SockRepository;
+import com.backspark.socks.service.cache.SockQueryCache;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind mode of stock movements.
+ * <p>
+ * Movements are checked against and applied to in-memory counters, written to the local
+ * {@link MovementJournal} and acknowledged without touching the database. A scheduled flush
+ * writes the summed deltas to the socks table together with a {@link LedgerCheckpoint}, so
+ * segments left on disk after a crash are replayed exactly once on the next start. The movement
+ * history receives the net change of every item per flush, not the single movements.
+ * <p>
+ * The ledger must be the only writer of single movements; there must be only one application
+ * instance per database in this mode.
+ */
+@Component
+@ConditionalOnProperty(prefix = "socks.write-behind", name = "enabled", havingValue = "true")
+public class WriteBehindLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindLedger.class);
+
+    private final SockRepository sockRepository;
+    private final LedgerCheckpointRepository checkpointRepository;
+    private final MovementHistoryRepository movementHistory;
+    private final TransactionTemplate transactionTemplate;
+    private final MovementJournal journal;
+    private final SockQueryCache sockQueryCache;
+
+    private final ConcurrentHashMap<SockKey, StockCounter> counters = new ConcurrentHashMap<>();
+    // Locks instead of monitors, so a virtual thread blocked on the journal or the database
+    // does not pin its carrier thread
+    private final ReentrantLock[] stripes;
+    // Movements hold the read lock while journaling, the flush takes the write lock to roll the
+    // journal and drain the counters as one step.
+    private final ReentrantReadWriteLock journalLock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public WriteBehindLedger(SockRepository sockRepository,
+                             LedgerCheckpointRepository checkpointRepository,
+                             MovementHistoryRepository movementHistory,
+                             TransactionTemplate transactionTemplate,
+                             SockQueryCache sockQueryCache,
+                             SocksProperties properties) {
+        SocksProperties.WriteBehind settings = properties.getWriteBehind();
+        this.sockRepository = sockRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.movementHistory = movementHistory;
+        this.transactionTemplate = transactionTemplate;
+        this.sockQueryCache = sockQueryCache;
+        this.journal = new MovementJournal(Path.of(settings.getJournalDir()), settings.isFsync());
+        this.stripes = new ReentrantLock[Integer.highestOneBit(Math.max(1, settings.getStripes() - 1)) << 1];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Applies journal segments that were not flushed before the last shutdown.
+     */
+    @PostConstruct
+    public void recover() {
+        long checkpoint = checkpointRepository.findById(LedgerCheckpoint.ID)
+                .map(LedgerCheckpoint::getLastSegment)
+                .orElse(-1L);
+        List<Long> segments = journal.segments();
+        long last = segments.isEmpty() ? checkpoint : Math.max(checkpoint, segments.get(segments.size() - 1));
+
+        Map<SockKey, Integer> deltas = new HashMap<>();
+        for (Long segment : segments) {
+            if (segment > checkpoint) {
+                journal.read(segment, (key, delta) -> deltas.merge(key, delta, Integer::sum));
+            }
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+        if (!deltas.isEmpty()) {
+            logger.info("Replaying {} sock items from the movement journal", deltas.size());
+            deadLetter(storeIsolating(deltas, last));
+        }
+        journal.deleteUpTo(last);
+        journal.start(last + 1);
+    }
+
+    public void registerIncome(SockKey key, int quantity) {
+        checkKey(key);
+        journalLock.readLock().lock();
+        try {
+            ReentrantLock stripe = stripe(key);
+            stripe.lock();
+            try {
+                StockCounter counter = counter(key);
+                checkCapacity(counter, quantity);
+                journal.append(key, quantity);
+                counter.available += quantity;
+                counter.pending += quantity;
+                counter.exists = true;
+            } finally {
+                stripe.unlock();
+            }
+        } finally {
+            journalLock.readLock().unlock();
+        }
+    }
+
+    public void registerOutcome(SockKey key, int quantity) {
+        checkKey(key);
+        journalLock.readLock().lock();
+        try {
+            ReentrantLock stripe = stripe(key);
+            stripe.lock();
+            try {
+                StockCounter counter = counter(key);
+                if (!counter.exists) {
+                    throw new InsufficientSocksException("Socks not found.");
+                }
+                if (counter.available < quantity) {
+                    throw new InsufficientSocksException("Not enough socks in stock.");
+                }
+                journal.append(key, -quantity);
+                counter.available -= quantity;
+                counter.pending -= quantity;
+            } finally {
+                stripe.unlock();
+            }
+        } finally {
+            journalLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Applies the summed movements of several sock items all or nothing. Counters are loaded
+     * first, then the check and the update run under the journal write lock, so no single
+     * movement can slip in between.
+     *
+     * @return rejected keys with the reason; nothing was applied unless the map is empty
+     */
+    public Map<SockKey, String> registerAll(Map<SockKey, Integer> deltas) {
+        deltas.keySet().forEach(WriteBehindLedger::checkKey);
+        for (SockKey key : deltas.keySet()) {
+            ReentrantLock stripe = stripe(key);
+            stripe.lock();
+            try {
+                counter(key);
+            } finally {
+                stripe.unlock();
+            }
+        }
+        journalLock.writeLock().lock();
+        try {
+            Map<SockKey, String> rejected = new HashMap<>();
+            deltas.forEach((key, delta) -> {
+                ReentrantLock stripe = stripe(key);
+                stripe.lock();
+                try {
+                    StockCounter counter = counters.get(key);
+                    if (delta > 0) {
+                        checkCapacity(counter, delta);
+                    } else if (delta < 0 && !counter.exists) {
+                        rejected.put(key, "Socks not found.");
+                    } else if (delta < 0 && counter.available < -delta) {
+                        rejected.put(key, "Not enough socks in stock.");
+                    }
+                } finally {
+                    stripe.unlock();
+                }
+            });
+            if (!rejected.isEmpty()) {
+                return rejected;
+            }
+            deltas.forEach((key, delta) -> {
+                if (delta == 0) return;
+                ReentrantLock stripe = stripe(key);
+                stripe.lock();
+                try {
+                    StockCounter counter = counters.get(key);
+                    journal.append(key, delta);
+                    counter.available += delta;
+                    counter.pending += delta;
+                    if (delta > 0) counter.exists = true;
+                } finally {
+                    stripe.unlock();
+                }
+            });
+            return rejected;
+        } finally {
+            journalLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Accounts for quantity changes committed to the database past the ledger, e.g. by a batch
+     * upload. Loaded counters of the keys are reloaded instead of adjusted by the change: a counter
+     * loaded between the commit and this call already contains it and would count it twice.
+     * Under the flush lock the database holds every drained movement, so its quantity plus the
+     * pending movements is the exact stock.
+     */
+    public void onExternalChange(Collection<SockKey> keys) {
+        flushLock.lock();
+        try {
+            for (SockKey key : keys) {
+                if (!counters.containsKey(key)) continue;
+                ReentrantLock stripe = stripe(key);
+                stripe.lock();
+                try {
+                    StockCounter counter = counters.get(key);
+                    sockRepository.findByColorAndCottonPart(key.color(), key.cottonPart()).ifPresent(sock -> {
+                        counter.available = sock.getQuantity() + counter.pending;
+                        counter.exists = true;
+                    });
+                } finally {
+                    stripe.unlock();
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the summed pending movements to the database.
+     *
+     * @return number of sock items written
+     */
+    @Scheduled(fixedDelayString = "${socks.write-behind.flush-interval:PT1S}")
+    public int flush() {
+        flushLock.lock();
+        try {
+            Map<SockKey, Integer> deltas = new HashMap<>();
+            long sealed;
+            journalLock.writeLock().lock();
+            try {
+                if (journal.isCurrentSegmentEmpty() && counters.values().stream().allMatch(c -> c.pending == 0)) {
+                    return 0;
+                }
+                sealed = journal.roll();
+                counters.forEach((key, counter) -> {
+                    if (counter.pending != 0) {
+                        deltas.put(key, Math.toIntExact(counter.pending));
+                        counter.pending = 0;
+                    }
+                });
+            } finally {
+                journalLock.writeLock().unlock();
+            }
+
+            if (!deltas.isEmpty()) {
+                Map<SockKey, Integer> rejected;
+                try {
+                    rejected = storeIsolating(deltas, sealed);
+                } catch (RuntimeException e) {
+                    logger.error("Failed to flush {} sock items, will retry", deltas.size(), e);
+                    deltas.forEach((key, delta) -> {
+                        ReentrantLock stripe = stripe(key);
+                        stripe.lock();
+                        try {
+                            counters.get(key).pending += delta;
+                        } finally {
+                            stripe.unlock();
+                        }
+                    });
+                    return 0;
+                }
+                // The counters still contain the dropped deltas, which never reach the database
+                rejected.forEach((key, delta) -> {
+                    ReentrantLock stripe = stripe(key);
+                    stripe.lock();
+                    try {
+                        counters.get(key).available -= delta;
+                    } finally {
+                        stripe.unlock();
+                    }
+                });
+                deadLetter(rejected);
+                sockQueryCache.invalidate(deltas.keySet());
+                deltas.keySet().removeAll(rejected.keySet());
+            }
+            journal.deleteUpTo(sealed);
+            logger.debug("Flushed {} sock items up to journal segment {}", deltas.size(), sealed);
+            return deltas.size();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        journal.close();
+    }
+
+    /**
+     * Stores the deltas with the checkpoint of the segment. If the database rejects them for good,
+     * every item is tried on its own in a transaction that is rolled back, and the others are stored
+     * without the rejected ones; retrying those would block every later flush and the next start.
+     *
+     * @return deltas the database rejected, they are not stored
+     */
+    private Map<SockKey, Integer> storeIsolating(Map<SockKey, Integer> deltas, long segment) {
+        try {
+            store(deltas, segment);
+            return Map.of();
+        } catch (DataIntegrityViolationException e) {
+            logger.warn("Database rejected a flush of {} sock items, isolating the failing ones", deltas.size(), e);
+        }
+        Map<SockKey, Integer> rejected = new HashMap<>();
+        deltas.forEach((key, delta) -> {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    write(delta > 0 ? Map.of(key, delta) : Map.of(), delta < 0 ? Map.of(key, delta) : Map.of());
+                    status.setRollbackOnly();
+                });
+            } catch (DataIntegrityViolationException e) {
+                rejected.put(key, delta);
+            }
+        });
+        Map<SockKey, Integer> accepted = new HashMap<>(deltas);
+        accepted.keySet().removeAll(rejected.keySet());
+        store(accepted, segment);
+        return rejected;
+    }
+
+    private void store(Map<SockKey, Integer> deltas, long segment) {
+        Map<SockKey, Integer> incomes = new TreeMap<>(SockKey.KEY_ORDER);
+        Map<SockKey, Integer> decreases = new TreeMap<>(SockKey.KEY_ORDER);
+        deltas.forEach((key, delta) -> {
+            if (delta > 0) incomes.put(key, delta);
+            if (delta < 0) decreases.put(key, delta);
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            write(incomes, decreases);
+            Map<SockKey, Integer> outcomes = new HashMap<>();
+            decreases.forEach((key, delta) -> outcomes.put(key, -delta));
+            movementHistory.append(MovementSource.WRITE_BEHIND, incomes, outcomes);
+            checkpointRepository.save(new LedgerCheckpoint(LedgerCheckpoint.ID, segment));
+        });
+    }
+
+    // Positive deltas may create items and go through the upsert. Negative ones only ever hit
+    // existing items the counters have checked, and the upsert would fail on them on PostgreSQL.
+    private void write(Map<SockKey, Integer> incomes, Map<SockKey, Integer> decreases) {
+        if (!incomes.isEmpty()) {
+            sockRepository.addQuantities(incomes);
+        }
+        if (!decreases.isEmpty()) {
+            Set<SockKey> missing = sockRepository.adjustQuantities(decreases);
+            if (!missing.isEmpty()) {
+                // Cannot happen while the ledger is the only writer; retrying would not help either
+                logger.error("Dropped write-behind outcomes of sock items missing in the database: {}", missing);
+            }
+        }
+    }
+
+    // Dropped deltas are only kept in the log, their journal segment is deleted with the flushed ones
+    private static void deadLetter(Map<SockKey, Integer> rejected) {
+        rejected.forEach((key, delta) -> logger.error(
+                "event=write_behind_dead_letter color={} cottonPart={} delta={}", key.color(), key.cottonPart(), delta));
+    }
+
+    // Movements are only journaled for keys the socks table accepts
+    private static void checkKey(SockKey key) {
+        if (key.cottonPart() < 0 || key.cottonPart() > 100) {
+            throw new InvalidRequestException("Cotton part must be between 0 and 100.");
+        }
+    }
+
+    // The stock of an item is stored as an int, so a counter never exceeds it and its pending
+    // movements always fit into an int as well
+    private static void checkCapacity(StockCounter counter, int quantity) {
+        if (counter.available + quantity > Integer.MAX_VALUE) {
+            throw new InvalidRequestException("Total quantity of a sock item is too large.");
+        }
+    }
+
+    // Must be called holding the stripe lock of the key.
+    private StockCounter counter(SockKey key) {
+        StockCounter counter = counters.get(key);
+        if (counter == null) {
+            counter = sockRepository.findByColorAndCottonPart(key.color(), key.cottonPart())
+                    .map(sock -> new StockCounter(sock.getQuantity(), true))
+                    .orElseGet(() -> new StockCounter(0, false));
+            counters.put(key, counter);
+        }
+        return counter;
+    }
+
+    private ReentrantLock stripe(SockKey key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * Stock of one sock item: {@code available} is the database quantity plus {@code pending}.
+     * Guarded by the stripe lock of its key.
+     */
+    private static final class StockCounter {
+
+        private long available;
+        private long pending;
+        private boolean exists;
+
+        private StockCounter(long available, boolean exists) {
+            this.available = available;
+            this.exists = exists;
+        }
+    }
+}
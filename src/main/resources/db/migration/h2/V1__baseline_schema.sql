@@ -0,0 +1,23 @@
+-- Same tables as db/migration/postgresql/V1__baseline_schema.sql
+
+CREATE TABLE socks (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    color       VARCHAR(255) NOT NULL,
+    cotton_part INTEGER      NOT NULL,
+    quantity    INTEGER      NOT NULL
+);
+
+CREATE TABLE ledger_checkpoint (
+    id           BIGINT PRIMARY KEY,
+    last_segment BIGINT NOT NULL
+);
+
+CREATE TABLE socks_import_staging (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    import_id   VARCHAR(36)  NOT NULL,
+    color       VARCHAR(255) NOT NULL,
+    cotton_part INTEGER      NOT NULL,
+    quantity    INTEGER      NOT NULL
+);
+
+CREATE INDEX idx_socks_import_staging_import_id ON socks_import_staging (import_id);
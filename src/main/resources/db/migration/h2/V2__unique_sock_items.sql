@@ -0,0 +1,9 @@
+-- Same constraints as db/migration/postgresql/V2__unique_sock_items.sql. H2 has no INCLUDE
+-- columns, so the indexes carry the key columns only. An embedded database starts empty,
+-- there are no duplicates or legacy tables to migrate.
+
+ALTER TABLE socks ADD CONSTRAINT uk_socks_color_cotton_part UNIQUE (color, cotton_part);
+ALTER TABLE socks ADD CONSTRAINT ck_socks_cotton_part CHECK (cotton_part BETWEEN 0 AND 100);
+ALTER TABLE socks ADD CONSTRAINT ck_socks_quantity CHECK (quantity >= 0);
+
+CREATE INDEX idx_socks_cotton_part ON socks (cotton_part);
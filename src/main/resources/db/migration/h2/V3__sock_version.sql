@@ -0,0 +1 @@
+ALTER TABLE socks ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
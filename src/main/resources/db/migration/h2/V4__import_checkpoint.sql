@@ -0,0 +1,7 @@
+-- Checkpoints of idempotent, resumable batch uploads
+CREATE TABLE import_checkpoint (
+    import_key     VARCHAR(128)             PRIMARY KEY,
+    rows_committed BIGINT                   NOT NULL,
+    completed      BOOLEAN                  NOT NULL,
+    updated_at     TIMESTAMP WITH TIME ZONE NOT NULL
+);
@@ -0,0 +1,38 @@
+-- Same tables as db/migration/postgresql/V5__stock_movements.sql. H2 has no BRIN indexes,
+-- the embedded database gets a B-tree index instead.
+
+CREATE TABLE stock_movements (
+    id            BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    occurred_at   TIMESTAMP WITH TIME ZONE NOT NULL,
+    movement_type VARCHAR(8)               NOT NULL,
+    source        VARCHAR(16)              NOT NULL,
+    color         VARCHAR(255)             NOT NULL,
+    cotton_part   INTEGER                  NOT NULL,
+    quantity      INTEGER                  NOT NULL,
+    CONSTRAINT ck_stock_movements_type CHECK (movement_type IN ('INCOME', 'OUTCOME')),
+    CONSTRAINT ck_stock_movements_quantity CHECK (quantity > 0)
+);
+
+CREATE INDEX idx_stock_movements_occurred_at ON stock_movements (occurred_at);
+
+CREATE TABLE stock_movements_hourly (
+    bucket_start TIMESTAMP WITH TIME ZONE NOT NULL,
+    color        VARCHAR(255)             NOT NULL,
+    cotton_part  INTEGER                  NOT NULL,
+    income       BIGINT                   NOT NULL,
+    outcome      BIGINT                   NOT NULL,
+    PRIMARY KEY (bucket_start, color, cotton_part)
+);
+
+CREATE INDEX idx_stock_movements_hourly_color ON stock_movements_hourly (color, bucket_start);
+
+CREATE TABLE stock_movements_daily (
+    bucket_start TIMESTAMP WITH TIME ZONE NOT NULL,
+    color        VARCHAR(255)             NOT NULL,
+    cotton_part  INTEGER                  NOT NULL,
+    income       BIGINT                   NOT NULL,
+    outcome      BIGINT                   NOT NULL,
+    PRIMARY KEY (bucket_start, color, cotton_part)
+);
+
+CREATE INDEX idx_stock_movements_daily_color ON stock_movements_daily (color, bucket_start);
@@ -0,0 +1,25 @@
+-- Tables of the application. IF NOT EXISTS keeps the migration safe on databases
+-- that were created by Hibernate (ddl-auto: update) before migrations were introduced.
+
+CREATE TABLE IF NOT EXISTS socks (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    color       VARCHAR(255) NOT NULL,
+    cotton_part INTEGER      NOT NULL,
+    quantity    INTEGER      NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS ledger_checkpoint (
+    id           BIGINT PRIMARY KEY,
+    last_segment BIGINT NOT NULL
+);
+
+-- Rows only live until the import is merged or cleaned up, so the table skips the WAL
+CREATE UNLOGGED TABLE IF NOT EXISTS socks_import_staging (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    import_id   VARCHAR(36)  NOT NULL,
+    color       VARCHAR(255) NOT NULL,
+    cotton_part INTEGER      NOT NULL,
+    quantity    INTEGER      NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_socks_import_staging_import_id ON socks_import_staging (import_id);
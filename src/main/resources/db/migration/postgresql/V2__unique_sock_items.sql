@@ -0,0 +1,43 @@
+-- One row per (color, cotton_part): lookups become a single index probe and upserts
+-- can rely on ON CONFLICT.
+
+-- The table of the old init.sql was never used by the application, move its rows over
+DO $$
+BEGIN
+    IF to_regclass('sock') IS NOT NULL THEN
+        INSERT INTO socks (color, cotton_part, quantity)
+        SELECT color, cottonpart, quantity FROM sock;
+        DROP TABLE sock;
+    END IF;
+END $$;
+
+-- Fold duplicate items into the row with the lowest id
+UPDATE socks s
+SET quantity = d.total
+FROM (
+    SELECT MIN(id) AS keep_id, SUM(quantity) AS total
+    FROM socks
+    GROUP BY color, cotton_part
+    HAVING COUNT(*) > 1
+) d
+WHERE s.id = d.keep_id;
+
+DELETE FROM socks s
+USING socks k
+WHERE s.color = k.color
+  AND s.cotton_part = k.cotton_part
+  AND s.id > k.id;
+
+ALTER TABLE socks DROP CONSTRAINT IF EXISTS uk_socks_color_cotton_part;
+ALTER TABLE socks DROP CONSTRAINT IF EXISTS ck_socks_cotton_part;
+ALTER TABLE socks DROP CONSTRAINT IF EXISTS ck_socks_quantity;
+
+-- quantity is included so that listings and totals filtered by color and cotton part
+-- are answered by index-only scans
+ALTER TABLE socks
+    ADD CONSTRAINT uk_socks_color_cotton_part UNIQUE (color, cotton_part) INCLUDE (quantity),
+    ADD CONSTRAINT ck_socks_cotton_part CHECK (cotton_part BETWEEN 0 AND 100),
+    ADD CONSTRAINT ck_socks_quantity CHECK (quantity >= 0);
+
+-- Totals and listings filtered by cotton part only
+CREATE INDEX IF NOT EXISTS idx_socks_cotton_part ON socks (cotton_part) INCLUDE (color, quantity);
@@ -0,0 +1,2 @@
+-- Optimistic lock version of Sock, incremented by every movement
+ALTER TABLE socks ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,39 @@
+-- Append-only history of stock movements and its hourly and daily rollups. Both rollups are
+-- updated in the transaction that appends the movements; analytics read the rollups only.
+
+CREATE TABLE stock_movements (
+    id            BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    occurred_at   TIMESTAMP WITH TIME ZONE NOT NULL,
+    movement_type VARCHAR(8)               NOT NULL,
+    source        VARCHAR(16)              NOT NULL,
+    color         VARCHAR(255)             NOT NULL,
+    cotton_part   INTEGER                  NOT NULL,
+    quantity      INTEGER                  NOT NULL,
+    CONSTRAINT ck_stock_movements_type CHECK (movement_type IN ('INCOME', 'OUTCOME')),
+    CONSTRAINT ck_stock_movements_quantity CHECK (quantity > 0)
+);
+
+-- Rows arrive in time order, so a BRIN index stays a few pages large at any table size
+CREATE INDEX idx_stock_movements_occurred_at ON stock_movements USING BRIN (occurred_at);
+
+CREATE TABLE stock_movements_hourly (
+    bucket_start TIMESTAMP WITH TIME ZONE NOT NULL,
+    color        VARCHAR(255)             NOT NULL,
+    cotton_part  INTEGER                  NOT NULL,
+    income       BIGINT                   NOT NULL,
+    outcome      BIGINT                   NOT NULL,
+    PRIMARY KEY (bucket_start, color, cotton_part)
+);
+
+CREATE INDEX idx_stock_movements_hourly_color ON stock_movements_hourly (color, bucket_start);
+
+CREATE TABLE stock_movements_daily (
+    bucket_start TIMESTAMP WITH TIME ZONE NOT NULL,
+    color        VARCHAR(255)             NOT NULL,
+    cotton_part  INTEGER                  NOT NULL,
+    income       BIGINT                   NOT NULL,
+    outcome      BIGINT                   NOT NULL,
+    PRIMARY KEY (bucket_start, color, cotton_part)
+);
+
+CREATE INDEX idx_stock_movements_daily_color ON stock_movements_daily (color, bucket_start);
@@ -0,0 +1,110 @@
+package com.backspark.socks.controller;
+
+import com.backspark.socks.config.SocksProperties;
+import com.backspark.socks.exception.RequestThrottledException;
+import com.backspark.socks.service.admission.AdmissionControl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AdmissionInterceptorTest {
+
+    private SocksProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new SocksProperties();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void laneShouldSeparateReadsWritesAndBatchTransfers() {
+        assertEquals(AdmissionControl.Lane.READ, AdmissionInterceptor.lane(new MockHttpServletRequest("GET", "/api/socks")));
+        assertEquals(AdmissionControl.Lane.READ, AdmissionInterceptor.lane(new MockHttpServletRequest("GET", "/api/socks/total")));
+        assertEquals(AdmissionControl.Lane.READ, AdmissionInterceptor.lane(new MockHttpServletRequest("GET", "/api/socks/batch/42")));
+        assertEquals(AdmissionControl.Lane.WRITE, AdmissionInterceptor.lane(new MockHttpServletRequest("POST", "/api/socks/income")));
+        assertEquals(AdmissionControl.Lane.WRITE, AdmissionInterceptor.lane(new MockHttpServletRequest("POST", "/api/socks/movements")));
+        assertEquals(AdmissionControl.Lane.BATCH, AdmissionInterceptor.lane(new MockHttpServletRequest("POST", "/api/socks/batch")));
+        assertEquals(AdmissionControl.Lane.BATCH, AdmissionInterceptor.lane(new MockHttpServletRequest("GET", "/api/socks/export")));
+    }
+
+    @Test
+    void afterCompletionShouldFreeSlot() {
+        properties.getAdmission().getWrites().setMaxConcurrent(1);
+        properties.getAdmission().getWrites().setMaxWait(Duration.ZERO);
+        AdmissionInterceptor interceptor = new AdmissionInterceptor(new AdmissionControl(properties, 10, meterRegistry));
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/socks/outcome");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        interceptor.preHandle(request, response, null);
+        assertThrows(RequestThrottledException.class,
+                () -> interceptor.preHandle(new MockHttpServletRequest("POST", "/api/socks/income"), response, null));
+        interceptor.afterCompletion(request, response, null, null);
+        // A second completion must not free a slot twice
+        interceptor.afterCompletion(request, response, null, null);
+
+        assertEquals(0, meterRegistry.get(AdmissionControl.ACTIVE).tag("lane", "write").gauge().value());
+    }
+
+    @Test
+    void asyncDispatchShouldKeepSlotOfAdmittedRequest() throws Exception {
+        properties.getAdmission().getBatch().setMaxConcurrent(1);
+        properties.getAdmission().getBatch().setMaxWait(Duration.ZERO);
+        AdmissionInterceptor interceptor = new AdmissionInterceptor(new AdmissionControl(properties, 10, meterRegistry));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/socks/export");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        interceptor.preHandle(request, response, null);
+        interceptor.afterConcurrentHandlingStarted(request, response, null);
+        assertEquals(1, meterRegistry.get(AdmissionControl.ACTIVE).tag("lane", "batch").gauge().value());
+
+        interceptor.preHandle(request, response, null);
+        interceptor.afterCompletion(request, response, null, null);
+        assertEquals(0, meterRegistry.get(AdmissionControl.ACTIVE).tag("lane", "batch").gauge().value());
+    }
+
+    @Test
+    void preHandleShouldLimitClientsByTrustedKeyOrAddress() {
+        properties.getAdmission().setRequestsPerSecond(1);
+        properties.getAdmission().setBurst(1);
+        properties.getAdmission().setTrustedKeys(Set.of("tenant-a", "tenant-b"));
+        AdmissionInterceptor interceptor = new AdmissionInterceptor(new AdmissionControl(properties, 10, meterRegistry));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        interceptor.preHandle(withKey("tenant-a", "10.0.0.1"), response, null);
+        assertThrows(RequestThrottledException.class, () -> interceptor.preHandle(withKey("tenant-a", "10.0.0.2"), response, null));
+        interceptor.preHandle(withKey("tenant-b", "10.0.0.1"), response, null);
+        interceptor.preHandle(withKey(null, "10.0.0.1"), response, null);
+    }
+
+    @Test
+    void preHandleShouldLimitUntrustedKeysByAddress() {
+        properties.getAdmission().setRequestsPerSecond(1);
+        properties.getAdmission().setBurst(1);
+        AdmissionInterceptor interceptor = new AdmissionInterceptor(new AdmissionControl(properties, 10, meterRegistry));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        interceptor.preHandle(withKey("made-up-1", "10.0.0.3"), response, null);
+        // A fresh key does not get a fresh bucket
+        assertThrows(RequestThrottledException.class, () -> interceptor.preHandle(withKey("made-up-2", "10.0.0.3"), response, null));
+        interceptor.preHandle(withKey("made-up-2", "10.0.0.4"), response, null);
+    }
+
+    private static MockHttpServletRequest withKey(String key, String remoteAddress) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/socks/total");
+        if (key != null) {
+            request.addHeader("X-API-Key", key);
+        }
+        request.setRemoteAddr(remoteAddress);
+        return request;
+    }
+}
@@ -0,0 +1,112 @@
+package com.backspark.socks.controller;
+
+import com.backspark.socks.dto.SockDto;
+import com.backspark.socks.dto.TurnoverDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives the REST endpoints over HTTP against the embedded database. All clients share one
+ * address, so the per-client rate limit is off; the bulkheads stay on.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "socks.admission.requests-per-second=0")
+@ActiveProfiles("embedded")
+class SockApiEndToEndTest {
+
+    private static final int CLIENTS = 8;
+    private static final int MOVEMENTS_PER_CLIENT = 100;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void concurrentMovementsShouldAddUpInTotal() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int client = 0; client < CLIENTS; client++) {
+                int cottonPart = client % 2 == 0 ? 40 : 60;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < MOVEMENTS_PER_CLIENT; i++) {
+                        assertEquals(HttpStatus.OK, restTemplate.postForEntity("/api/socks/income",
+                                new SockDto("e2e-white", cottonPart, 2), Void.class).getStatusCode());
+                        assertEquals(HttpStatus.OK, restTemplate.postForEntity("/api/socks/outcome",
+                                new SockDto("e2e-white", cottonPart, 1), Void.class).getStatusCode());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        ResponseEntity<Long> total = restTemplate.getForEntity("/api/socks/total?color=e2e-white", Long.class);
+        assertEquals(HttpStatus.OK, total.getStatusCode());
+        assertEquals(CLIENTS * MOVEMENTS_PER_CLIENT, total.getBody());
+        assertEquals(CLIENTS / 2 * MOVEMENTS_PER_CLIENT,
+                restTemplate.getForObject("/api/socks/total?color=e2e-white&operator=equal&cottonPart=40", Long.class));
+    }
+
+    @Test
+    void exportShouldStreamStockFromDatabase() {
+        restTemplate.postForEntity("/api/socks/income", new SockDto("e2e-export", 30, 7), Void.class);
+        restTemplate.postForEntity("/api/socks/income", new SockDto("e2e-export", 20, 4), Void.class);
+
+        ResponseEntity<String> export = restTemplate.getForEntity("/api/socks/export?format=ndjson&color=e2e-export", String.class);
+
+        assertEquals(HttpStatus.OK, export.getStatusCode());
+        assertEquals("{\"color\":\"e2e-export\",\"cottonPart\":20,\"quantity\":4}\n"
+                + "{\"color\":\"e2e-export\",\"cottonPart\":30,\"quantity\":7}\n", export.getBody());
+    }
+
+    @Test
+    void turnoverShouldSumMovementsPerCottonBand() {
+        Instant from = Instant.now().minus(1, ChronoUnit.HOURS);
+        restTemplate.postForEntity("/api/socks/income", new SockDto("e2e-turnover", 41, 10), Void.class);
+        restTemplate.postForEntity("/api/socks/income", new SockDto("e2e-turnover", 47, 5), Void.class);
+        restTemplate.postForEntity("/api/socks/outcome", new SockDto("e2e-turnover", 41, 3), Void.class);
+        restTemplate.postForEntity("/api/socks/income", new SockDto("e2e-turnover", 80, 2), Void.class);
+
+        for (String granularity : List.of("hour", "day")) {
+            ResponseEntity<TurnoverDto[]> turnover = restTemplate.getForEntity(
+                    "/api/socks/analytics/turnover?from={from}&granularity={granularity}&color=e2e-turnover&cottonBand=10",
+                    TurnoverDto[].class, from, granularity);
+
+            assertEquals(HttpStatus.OK, turnover.getStatusCode());
+            TurnoverDto[] buckets = turnover.getBody();
+            // A bucket boundary may fall between the movements, so buckets are summed per band
+            assertArrayEquals(new long[]{15, 3}, sum(buckets, 40, 49), granularity);
+            assertArrayEquals(new long[]{2, 0}, sum(buckets, 80, 89), granularity);
+        }
+    }
+
+    private static long[] sum(TurnoverDto[] buckets, int cottonPartFrom, int cottonPartTo) {
+        long[] total = new long[2];
+        for (TurnoverDto bucket : buckets) {
+            if (bucket.cottonPartFrom() == cottonPartFrom && bucket.cottonPartTo() == cottonPartTo) {
+                total[0] += bucket.income();
+                total[1] += bucket.outcome();
+            }
+        }
+        return total;
+    }
+}
@@ -1,8 +1,22 @@
 package com.backspark.socks.controller;
 
+import com.backspark.socks.dto.BulkMovementRequest;
+import com.backspark.socks.dto.BulkMovementResultDto;
+import com.backspark.socks.dto.CottonOperator;
+import com.backspark.socks.dto.SockCursor;
 import com.backspark.socks.dto.SockDto;
+import com.backspark.socks.dto.SockWindowDto;
+import com.backspark.socks.dto.TurnoverDto;
+import com.backspark.socks.dto.TurnoverGranularity;
+import com.backspark.socks.exception.ImportJobNotFoundException;
+import com.backspark.socks.exception.RequestThrottledException;
 import com.backspark.socks.model.Sock;
+import com.backspark.socks.service.ImportJobService;
+import com.backspark.socks.service.SockExportService;
 import com.backspark.socks.service.SockService;
+import com.backspark.socks.service.StockAnalyticsService;
+import com.backspark.socks.service.batch.BatchFormat;
+import com.backspark.socks.service.batch.ImportJob;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
@@ -14,17 +28,32 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -41,11 +70,35 @@ class SockControllerTest {
         public SockService sockService() {
             return Mockito.mock(SockService.class);
         }
+
+        @Bean
+        public ImportJobService importJobService() {
+            return Mockito.mock(ImportJobService.class);
+        }
+
+        @Bean
+        public SockExportService sockExportService() {
+            return Mockito.mock(SockExportService.class);
+        }
+
+        @Bean
+        public StockAnalyticsService stockAnalyticsService() {
+            return Mockito.mock(StockAnalyticsService.class);
+        }
     }
 
     @Autowired
     private SockService sockService;
 
+    @Autowired
+    private ImportJobService importJobService;
+
+    @Autowired
+    private SockExportService sockExportService;
+
+    @Autowired
+    private StockAnalyticsService stockAnalyticsService;
+
     @Test
     void registerIncomeShouldReturnOk() throws Exception {
         doNothing().when(sockService).registerIncome(any(SockDto.class));
@@ -62,6 +115,92 @@ class SockControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void registerIncomeShouldReturnBadRequest_whenCottonPartIsAbove100() throws Exception {
+        mockMvc.perform(post("/api/socks/income")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"color": "out-of-range", "cottonPart": 150, "quantity": 10}
+                                """))
+                .andExpect(status().isBadRequest());
+
+        verify(sockService, never()).registerIncome(argThat(sockDto -> "out-of-range".equals(sockDto.getColor())));
+    }
+
+    @Test
+    void registerIncomeShouldReturnServiceUnavailable_whenNoConnectionIsFree() throws Exception {
+        doThrow(new CannotGetJdbcConnectionException("Connection is not available, request timed out after 2000ms"))
+                .when(sockService).registerIncome(argThat(sockDto -> "overloaded".equals(sockDto.getColor())));
+
+        mockMvc.perform(post("/api/socks/income")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"color": "overloaded", "cottonPart": 50, "quantity": 10}
+                                """))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    void registerIncomeShouldReturnTooManyRequests_whenThrottled() throws Exception {
+        doThrow(new RequestThrottledException("Too many requests from the client.", 3))
+                .when(sockService).registerIncome(argThat(sockDto -> "throttled".equals(sockDto.getColor())));
+
+        mockMvc.perform(post("/api/socks/income")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"color": "throttled", "cottonPart": 50, "quantity": 10}
+                                """))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "3"))
+                .andExpect(jsonPath("$.message").value("Too many requests from the client."));
+    }
+
+    @Test
+    void registerOutcomeShouldReturnConflict_whenRetriesAreExhausted() throws Exception {
+        doThrow(new OptimisticLockingFailureException("Row was updated by another transaction"))
+                .when(sockService).registerOutcome(any(SockDto.class));
+
+        mockMvc.perform(post("/api/socks/outcome")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"color": "red", "cottonPart": 50, "quantity": 10}
+                                """))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value("The stock was changed by a concurrent request."));
+    }
+
+    @Test
+    void registerMovementsShouldReturnConflict_whenAtomicRequestIsRejected() throws Exception {
+        when(sockService.registerMovements(any(BulkMovementRequest.class))).thenReturn(BulkMovementResultDto.of(List.of(
+                new BulkMovementResultDto.LineResult(0, BulkMovementResultDto.Status.NOT_APPLIED, null),
+                new BulkMovementResultDto.LineResult(1, BulkMovementResultDto.Status.REJECTED, "Not enough socks in stock."))));
+
+        mockMvc.perform(post("/api/socks/movements")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {
+                                    "movements": [
+                                        {"type": "INCOME", "color": "red", "cottonPart": 50, "quantity": 10},
+                                        {"type": "OUTCOME", "color": "blue", "cottonPart": 70, "quantity": 3}
+                                    ]
+                                }
+                                """))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.lines[1].error").value("Not enough socks in stock."));
+    }
+
+    @Test
+    void registerMovementsShouldReturnBadRequest_whenLineIsInvalid() throws Exception {
+        mockMvc.perform(post("/api/socks/movements")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"mode": "PER_LINE", "movements": [{"type": "INCOME", "color": "red", "cottonPart": 50, "quantity": 0}]}
+                                """))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void getSocksShouldReturnFilteredList() throws Exception {
         Sock sock = new Sock();
@@ -69,16 +208,62 @@ class SockControllerTest {
         sock.setCottonPart(50);
         sock.setQuantity(10);
 
-        when(sockService.getSocks(any(), anyInt(), anyInt(), any())).thenReturn(List.of(sock));
+        when(sockService.getSocks(any(), anyInt(), anyInt(), any()))
+                .thenReturn(new PageImpl<>(List.of(sock), PageRequest.of(0, 10), 1));
 
         mockMvc.perform(get("/api/socks")
                         .param("color", "red")
                         .param("cottonPartMin", "30")
                         .param("cottonPartMax", "70"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].color").value("red"))
-                .andExpect(jsonPath("$[0].cottonPart").value(50))
-                .andExpect(jsonPath("$[0].quantity").value(10));
+                .andExpect(jsonPath("$.content[0].color").value("red"))
+                .andExpect(jsonPath("$.content[0].cottonPart").value(50))
+                .andExpect(jsonPath("$.content[0].quantity").value(10))
+                .andExpect(jsonPath("$.page.totalElements").value(1));
+    }
+
+    @Test
+    void countSocksShouldReturnTotal() throws Exception {
+        when(sockService.countSocks("red", CottonOperator.MORE_THAN, 30, null, null)).thenReturn(42L);
+
+        mockMvc.perform(get("/api/socks/total")
+                        .param("color", "red")
+                        .param("operator", "moreThan")
+                        .param("cottonPart", "30"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").value(42));
+    }
+
+    @Test
+    void countSocksShouldReturnBadRequest_whenOperatorIsUnknown() throws Exception {
+        mockMvc.perform(get("/api/socks/total")
+                        .param("operator", "between")
+                        .param("cottonPart", "30"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void scrollSocksShouldReturnNextCursor() throws Exception {
+        Sock sock = new Sock(1L, "red", 50, 10);
+        String nextCursor = new SockCursor("red", 50).encode();
+
+        when(sockService.scrollSocks(eq("red"), isNull(), isNull(), eq(new SockCursor("red", 40)), eq(1)))
+                .thenReturn(new SockWindowDto(List.of(sock), nextCursor));
+
+        mockMvc.perform(get("/api/socks/scroll")
+                        .param("color", "red")
+                        .param("cursor", new SockCursor("red", 40).encode())
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].cottonPart").value(50))
+                .andExpect(jsonPath("$.nextCursor").value(nextCursor));
+    }
+
+    @Test
+    void scrollSocksShouldReturnBadRequest_whenCursorIsInvalid() throws Exception {
+        mockMvc.perform(get("/api/socks/scroll")
+                        .param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
@@ -107,12 +292,144 @@ class SockControllerTest {
                 out.toByteArray()
         );
 
-        doNothing().when(sockService).uploadBatch(any());
+        when(importJobService.submit(any(), any(), any())).thenReturn(new ImportJob("job-1", "socks.xlsx"));
 
         mockMvc.perform(multipart("/api/socks/batch")
                         .file(file))
-                .andExpect(status().isOk());
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/socks/batch/job-1"))
+                .andExpect(jsonPath("$.id").value("job-1"))
+                .andExpect(jsonPath("$.status").value("QUEUED"));
+
+        verify(importJobService, times(1)).submit(any(), eq(BatchFormat.XLSX), isNull());
+        verify(sockService, never()).uploadBatch(any());
+    }
+
+    @Test
+    void uploadBatchStreamShouldImportRequestBody() throws Exception {
+        ImportJob job = new ImportJob("job-2", "socks.csv");
+        job.started();
+        job.succeeded();
+        when(importJobService.importNow(any(), eq("socks.csv"), eq(BatchFormat.CSV), any())).thenReturn(job);
+
+        mockMvc.perform(post("/api/socks/batch")
+                        .param("fileName", "socks.csv")
+                        .contentType("text/csv")
+                        .content("color,cottonPart,quantity\nred,50,10\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value("job-2"))
+                .andExpect(jsonPath("$.status").value("SUCCEEDED"));
+    }
+
+    @Test
+    void uploadBatchStreamShouldPassIdempotencyKey() throws Exception {
+        ImportJob job = new ImportJob("job-3", "socks.csv", "key:upload-1");
+        job.started();
+        job.getProgress().alreadyImported(1);
+        job.succeeded();
+        when(importJobService.importNow(any(), eq("socks.csv"), eq(BatchFormat.CSV), eq("upload-1"))).thenReturn(job);
+
+        mockMvc.perform(post("/api/socks/batch")
+                        .param("fileName", "socks.csv")
+                        .header("Idempotency-Key", "upload-1")
+                        .contentType("text/csv")
+                        .content("color,cottonPart,quantity\nred,50,10\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.importKey").value("key:upload-1"))
+                .andExpect(jsonPath("$.alreadyImported").value(true));
+    }
+
+    @Test
+    void getTurnoverShouldReturnBuckets() throws Exception {
+        Instant from = Instant.parse("2024-03-01T00:00:00Z");
+        Instant to = Instant.parse("2024-03-03T00:00:00Z");
+        when(stockAnalyticsService.getTurnover(TurnoverGranularity.DAY, from, to, "red", 20)).thenReturn(List.of(
+                new TurnoverDto(from, "red", 40, 59, 12, 5)));
+
+        mockMvc.perform(get("/api/socks/analytics/turnover")
+                        .param("from", "2024-03-01T00:00:00Z")
+                        .param("to", "2024-03-03T00:00:00Z")
+                        .param("color", "red")
+                        .param("cottonBand", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].bucketStart").value("2024-03-01T00:00:00Z"))
+                .andExpect(jsonPath("$[0].cottonPartFrom").value(40))
+                .andExpect(jsonPath("$[0].cottonPartTo").value(59))
+                .andExpect(jsonPath("$[0].income").value(12))
+                .andExpect(jsonPath("$[0].outcome").value(5));
+    }
+
+    @Test
+    void getTurnoverShouldRejectUnknownGranularity() throws Exception {
+        mockMvc.perform(get("/api/socks/analytics/turnover")
+                        .param("from", "2024-03-01T00:00:00Z")
+                        .param("granularity", "week"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void exportSocksShouldStreamCsv() throws Exception {
+        when(sockExportService.export(eq(BatchFormat.CSV), eq("red"), isNull(), isNull(), eq(false), any())).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(5);
+            out.write("color,cottonPart,quantity\nred,50,10\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+
+        MvcResult result = mockMvc.perform(get("/api/socks/export").param("color", "red"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"socks.csv\""))
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().string("color,cottonPart,quantity\nred,50,10\n"));
+    }
+
+    @Test
+    void exportSocksShouldCompress_whenClientAcceptsGzip() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/socks/export")
+                        .param("format", "ndjson")
+                        .header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"socks.ndjson\""));
+        verify(sockExportService).export(eq(BatchFormat.NDJSON), isNull(), isNull(), isNull(), eq(true), any());
+    }
+
+    @Test
+    void exportSocksShouldRejectUnknownFormat() throws Exception {
+        mockMvc.perform(get("/api/socks/export").param("format", "xlsx").param("color", "rejected"))
+                .andExpect(status().isBadRequest());
+        verify(sockExportService, never()).export(any(), eq("rejected"), any(), any(), anyBoolean(), any());
+    }
+
+    @Test
+    void getBatchStatusShouldReturnProgress() throws Exception {
+        ImportJob job = new ImportJob("job-1", "socks.xlsx");
+        job.started();
+        job.getProgress().setRowsParsed(100);
+        job.getProgress().addRowsApplied(100);
+        job.succeeded();
+
+        when(importJobService.getJob("job-1")).thenReturn(job);
+
+        mockMvc.perform(get("/api/socks/batch/job-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("SUCCEEDED"))
+                .andExpect(jsonPath("$.rowsApplied").value(100));
+    }
+
+    @Test
+    void getBatchStatusShouldReturnNotFound_whenJobIsUnknown() throws Exception {
+        when(importJobService.getJob("missing")).thenThrow(new ImportJobNotFoundException("Import job not found: missing"));
 
-        verify(sockService, times(1)).uploadBatch(any());
+        mockMvc.perform(get("/api/socks/batch/missing"))
+                .andExpect(status().isNotFound());
     }
 }
@@ -0,0 +1,146 @@
+package com.backspark.socks.service;
+
+import com.backspark.socks.config.SocksProperties;
+import com.backspark.socks.exception.ImportRejectedException;
+import com.backspark.socks.exception.InvalidRequestException;
+import com.backspark.socks.model.ImportCheckpoint;
+import com.backspark.socks.repository.ImportCheckpointRepository;
+import com.backspark.socks.service.batch.BatchFormat;
+import com.backspark.socks.service.batch.BatchProgress;
+import com.backspark.socks.service.batch.ImportJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ImportJobServiceTest {
+
+    private SockService sockService;
+    private ImportCheckpointRepository checkpointRepository;
+    private ImportJobService importJobService;
+
+    @BeforeEach
+    void setUp() {
+        sockService = mock(SockService.class);
+        checkpointRepository = mock(ImportCheckpointRepository.class);
+        SocksProperties properties = new SocksProperties();
+        properties.getBatch().setMaxConcurrentImports(1);
+        properties.getBatch().setMaxQueuedImports(0);
+        importJobService = new ImportJobService(sockService, checkpointRepository, properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        importJobService.shutdown();
+    }
+
+    @Test
+    void submitShouldRunImportInBackground() throws Exception {
+        doAnswer(invocation -> {
+            BatchProgress progress = invocation.getArgument(4);
+            progress.setRowsParsed(2);
+            progress.addRowsApplied(2);
+            return null;
+        }).when(sockService).importBatch(any(), eq("socks.xlsx"), eq(BatchFormat.XLSX), anyString(), any());
+
+        ImportJob job = importJobService.submit(file(), BatchFormat.XLSX, null);
+
+        awaitFinished(job);
+        assertEquals(ImportJob.Status.SUCCEEDED, job.getStatus());
+        assertEquals(2, job.getProgress().getRowsApplied());
+        assertSame(job, importJobService.getJob(job.getId()));
+    }
+
+    @Test
+    void submitShouldRejectUpload_whenLimitIsReached() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(sockService).importBatch(any(), any(), any(), any(), any());
+
+        ImportJob first = importJobService.submit(file(), BatchFormat.XLSX, null);
+
+        assertThrows(ImportRejectedException.class, () -> importJobService.submit(file(), BatchFormat.XLSX, null));
+
+        release.countDown();
+        awaitFinished(first);
+        assertEquals(ImportJob.Status.SUCCEEDED, first.getStatus());
+    }
+
+    @Test
+    void failedImportShouldBeReported() throws Exception {
+        doThrow(new IllegalStateException("broken file")).when(sockService).importBatch(any(), any(), any(), any(), any());
+
+        ImportJob job = importJobService.submit(file(), BatchFormat.XLSX, null);
+
+        awaitFinished(job);
+        assertEquals(ImportJob.Status.FAILED, job.getStatus());
+        assertEquals("broken file", job.getError());
+    }
+
+    @Test
+    void submitShouldNotImportAgain_whenSameContentWasImported() throws Exception {
+        ArgumentCaptor<String> importKey = ArgumentCaptor.forClass(String.class);
+        ImportJob first = importJobService.submit(file(), BatchFormat.XLSX, null);
+        awaitFinished(first);
+        verify(sockService).importBatch(any(), any(), any(), importKey.capture(), any());
+        assertTrue(importKey.getValue().startsWith("sha256:"));
+        when(checkpointRepository.findById(importKey.getValue()))
+                .thenReturn(Optional.of(new ImportCheckpoint(importKey.getValue(), 3L, true, Instant.now())));
+
+        ImportJob second = importJobService.submit(file(), BatchFormat.XLSX, null);
+
+        assertEquals(ImportJob.Status.SUCCEEDED, second.getStatus());
+        assertTrue(second.getProgress().isAlreadyImported());
+        assertEquals(3, second.getProgress().getRowsSkipped());
+        verify(sockService, times(1)).importBatch(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void submitShouldReturnRunningJob_whenKeyIsBeingImported() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(sockService).importBatch(any(), any(), any(), eq("key:upload-1"), any());
+
+        ImportJob first = importJobService.submit(file(), BatchFormat.XLSX, "upload-1");
+        ImportJob second = importJobService.submit(file(), BatchFormat.XLSX, "upload-1");
+
+        assertSame(first, second);
+        release.countDown();
+        awaitFinished(first);
+        verify(sockService, times(1)).importBatch(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void submitShouldRejectBlankIdempotencyKey() {
+        assertThrows(InvalidRequestException.class, () -> importJobService.submit(file(), BatchFormat.XLSX, " "));
+    }
+
+    private static MockMultipartFile file() {
+        return new MockMultipartFile("file", "socks.xlsx", null, new byte[]{1, 2, 3});
+    }
+
+    private static void awaitFinished(ImportJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!job.isFinished() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(job.isFinished(), "import job did not finish in time");
+    }
+}
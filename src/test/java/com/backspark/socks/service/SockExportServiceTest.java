@@ -0,0 +1,95 @@
+package com.backspark.socks.service;
+
+import com.backspark.socks.config.SocksProperties;
+import com.backspark.socks.exception.InvalidRequestException;
+import com.backspark.socks.repository.SockRepository;
+import com.backspark.socks.repository.SockRepositoryCustom.SockExportHandler;
+import com.backspark.socks.service.batch.BatchFormat;
+import com.backspark.socks.service.batch.CsvSockRowReader;
+import com.backspark.socks.service.batch.NdjsonSockRowReader;
+import com.backspark.socks.service.batch.SockRowReader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class SockExportServiceTest {
+
+    private SockRepository sockRepository;
+    private SockExportService sockExportService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        sockRepository = mock(SockRepository.class);
+        sockExportService = new SockExportService(sockRepository, new SocksProperties());
+        doAnswer(invocation -> {
+            SockExportHandler handler = invocation.getArgument(3);
+            handler.onSock("red", 50, 10);
+            handler.onSock("navy, dark", 80, 3);
+            handler.onSock("say \"hi\"", 0, 1);
+            return 3L;
+        }).when(sockRepository).exportSocks(eq("red"), isNull(), isNull(), any());
+    }
+
+    @Test
+    void exportShouldWriteCsvInUploadLayout() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = sockExportService.export(BatchFormat.CSV, "red", null, null, false, out);
+
+        assertEquals(3, rows);
+        assertEquals("color,cottonPart,quantity\n"
+                + "red,50,10\n"
+                + "\"navy, dark\",80,3\n"
+                + "\"say \"\"hi\"\"\",0,1\n", out.toString(StandardCharsets.UTF_8));
+        assertEquals(List.of("red/50/10", "navy, dark/80/3", "say \"hi\"/0/1"), readBack(new CsvSockRowReader(), out.toByteArray()));
+    }
+
+    @Test
+    void exportShouldWriteNdjsonThatCanBeImportedAgain() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        sockExportService.export(BatchFormat.NDJSON, "red", null, null, false, out);
+
+        assertEquals("{\"color\":\"red\",\"cottonPart\":50,\"quantity\":10}",
+                out.toString(StandardCharsets.UTF_8).lines().findFirst().orElseThrow());
+        assertEquals(List.of("red/50/10", "navy, dark/80/3", "say \"hi\"/0/1"), readBack(new NdjsonSockRowReader(), out.toByteArray()));
+    }
+
+    @Test
+    void exportShouldCompressWithGzip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        sockExportService.export(BatchFormat.CSV, "red", null, null, true, out);
+
+        byte[] plain = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())).readAllBytes();
+        assertEquals(List.of("red/50/10", "navy, dark/80/3", "say \"hi\"/0/1"), readBack(new CsvSockRowReader(), plain));
+    }
+
+    @Test
+    void exportFormatShouldRejectUnknownFormat() {
+        assertEquals(BatchFormat.NDJSON, SockExportService.exportFormat("NDJSON"));
+        assertThrows(InvalidRequestException.class, () -> SockExportService.exportFormat("xlsx"));
+    }
+
+    private static List<String> readBack(SockRowReader reader, byte[] content) throws IOException {
+        List<String> rows = new ArrayList<>();
+        reader.read(new ByteArrayInputStream(content),
+                (rowNum, color, cottonPart, quantity) -> rows.add(color + "/" + cottonPart + "/" + quantity));
+        return rows;
+    }
+}
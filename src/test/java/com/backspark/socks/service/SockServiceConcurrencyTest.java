@@ -0,0 +1,172 @@
+package com.backspark.socks.service;
+
+import com.backspark.socks.dto.BulkMovementRequest;
+import com.backspark.socks.dto.BulkMovementResultDto;
+import com.backspark.socks.dto.MovementDto;
+import com.backspark.socks.dto.SockDto;
+import com.backspark.socks.exception.InsufficientSocksException;
+import com.backspark.socks.model.Sock;
+import com.backspark.socks.repository.SockRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("embedded")
+class SockServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private SockService sockService;
+
+    @Autowired
+    private SockRepository sockRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        sockRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentIncomeAndOutcomeShouldNotLoseUpdates() throws Exception {
+        sockRepository.save(new Sock(null, "red", 50, 1000));
+        int movementsPerThread = 200;
+
+        runConcurrently(thread -> {
+            SockDto sockDto = new SockDto("red", 50, 1);
+            for (int i = 0; i < movementsPerThread; i++) {
+                if (thread % 2 == 0) {
+                    sockService.registerIncome(sockDto);
+                } else {
+                    sockService.registerOutcome(sockDto);
+                }
+            }
+        });
+
+        assertEquals(1000, sockRepository.findByColorAndCottonPart("red", 50).orElseThrow().getQuantity());
+    }
+
+    @Test
+    void concurrentOutcomesShouldNotOversell() throws Exception {
+        sockRepository.save(new Sock(null, "blue", 70, 100));
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            SockDto sockDto = new SockDto("blue", 70, 1);
+            for (int i = 0; i < 50; i++) {
+                try {
+                    sockService.registerOutcome(sockDto);
+                    succeeded.incrementAndGet();
+                } catch (InsufficientSocksException e) {
+                    rejected.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(100, succeeded.get());
+        assertEquals(THREADS * 50 - 100, rejected.get());
+        assertEquals(0, sockRepository.findByColorAndCottonPart("blue", 70).orElseThrow().getQuantity());
+    }
+
+    @Test
+    void registerMovementsShouldCreateAndUpdateItems() {
+        sockRepository.save(new Sock(null, "blue", 70, 5));
+
+        BulkMovementResultDto result = sockService.registerMovements(new BulkMovementRequest(BulkMovementRequest.Mode.ATOMIC, List.of(
+                new MovementDto(MovementDto.Type.INCOME, "green", 30, 4),
+                new MovementDto(MovementDto.Type.OUTCOME, "blue", 70, 5),
+                new MovementDto(MovementDto.Type.INCOME, "green", 30, 6))));
+
+        assertEquals(3, result.applied());
+        assertEquals(10, sockRepository.findByColorAndCottonPart("green", 30).orElseThrow().getQuantity());
+        assertEquals(0, sockRepository.findByColorAndCottonPart("blue", 70).orElseThrow().getQuantity());
+    }
+
+    @Test
+    void opposingBulkRequestsShouldLockRowsInSameOrder() throws Exception {
+        sockRepository.save(new Sock(null, "grey", 10, 1000));
+        sockRepository.save(new Sock(null, "white", 90, 1000));
+        double retriesBefore = meterRegistry.counter(ConcurrencyRetry.RETRIES).count();
+
+        // Outcomes used to be applied before incomes, so these two requests locked the rows in opposite orders
+        runConcurrently(thread -> {
+            String from = thread % 2 == 0 ? "white" : "grey";
+            String to = thread % 2 == 0 ? "grey" : "white";
+            BulkMovementRequest request = new BulkMovementRequest(BulkMovementRequest.Mode.ATOMIC, List.of(
+                    new MovementDto(MovementDto.Type.OUTCOME, from, from.equals("grey") ? 10 : 90, 1),
+                    new MovementDto(MovementDto.Type.INCOME, to, to.equals("grey") ? 10 : 90, 1)));
+            for (int i = 0; i < 50; i++) {
+                assertEquals(2, sockService.registerMovements(request).applied());
+            }
+        });
+
+        assertEquals(1000, sockRepository.findByColorAndCottonPart("grey", 10).orElseThrow().getQuantity());
+        assertEquals(1000, sockRepository.findByColorAndCottonPart("white", 90).orElseThrow().getQuantity());
+        assertEquals(retriesBefore, meterRegistry.counter(ConcurrencyRetry.RETRIES).count());
+    }
+
+    @Test
+    void cachedItemShouldReflectMovements() {
+        sockRepository.save(new Sock(null, "black", 40, 10));
+        // Puts the item into the second-level cache
+        assertEquals(10, sockRepository.findByColorAndCottonPart("black", 40).orElseThrow().getQuantity());
+
+        sockService.registerIncome(new SockDto("black", 40, 5));
+        assertEquals(15, sockRepository.findByColorAndCottonPart("black", 40).orElseThrow().getQuantity());
+
+        sockService.registerOutcome(new SockDto("black", 40, 15));
+        assertEquals(0, sockRepository.findByColorAndCottonPart("black", 40).orElseThrow().getQuantity());
+
+        // A bulk upsert evicts the cached item as well, and a new item is resolved by id without a cache entry
+        sockService.registerMovements(new BulkMovementRequest(BulkMovementRequest.Mode.ATOMIC, List.of(
+                new MovementDto(MovementDto.Type.INCOME, "black", 40, 7),
+                new MovementDto(MovementDto.Type.INCOME, "black", 45, 3))));
+        assertEquals(7, sockRepository.findByColorAndCottonPart("black", 40).orElseThrow().getQuantity());
+        assertEquals(3, sockRepository.findByColorAndCottonPart("black", 45).orElseThrow().getQuantity());
+    }
+
+    private void runConcurrently(ThreadBody body) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    body.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadBody {
+        void run(int thread);
+    }
+}
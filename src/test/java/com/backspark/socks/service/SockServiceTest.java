@@ -1,9 +1,28 @@
 package com.backspark.socks.service;
 
+import com.backspark.socks.config.SocksProperties;
+import com.backspark.socks.dto.BulkMovementRequest;
+import com.backspark.socks.dto.BulkMovementResultDto;
+import com.backspark.socks.dto.CottonOperator;
+import com.backspark.socks.dto.MovementDto;
 import com.backspark.socks.dto.SockDto;
+import com.backspark.socks.exception.FileProcessingException;
 import com.backspark.socks.exception.InsufficientSocksException;
-import com.backspark.socks.model.Sock;
+import com.backspark.socks.exception.InvalidRequestException;
+import com.backspark.socks.model.MovementSource;
+import com.backspark.socks.model.SockKey;
+import com.backspark.socks.repository.ImportCheckpointRepository;
+import com.backspark.socks.repository.ImportStagingRepository;
+import com.backspark.socks.repository.MovementHistoryRepository;
 import com.backspark.socks.repository.SockRepository;
+import com.backspark.socks.service.batch.BatchFormat;
+import com.backspark.socks.service.batch.ChunkedImportEngine;
+import com.backspark.socks.service.batch.CsvSockRowReader;
+import com.backspark.socks.service.batch.SockRowReaders;
+import com.backspark.socks.service.batch.StreamingXlsxSockRowReader;
+import com.backspark.socks.service.cache.SockQueryCache;
+import com.backspark.socks.service.index.StockIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
@@ -11,53 +30,306 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class SockServiceTest {
 
     private SockRepository sockRepository;
+    private MovementHistoryRepository movementHistory;
+    private SimpleMeterRegistry meterRegistry;
     private SockService sockService;
 
     @BeforeEach
     void setUp() {
         sockRepository = mock(SockRepository.class);
-        sockService = new SockService(sockRepository);
+        movementHistory = mock(MovementHistoryRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        sockService = newSockService(Optional.empty());
+    }
+
+    private SockService newSockService(Optional<StockIndex> stockIndex) {
+        SocksProperties properties = new SocksProperties();
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        ChunkedImportEngine chunkedImportEngine = new ChunkedImportEngine(sockRepository, mock(ImportStagingRepository.class),
+                mock(ImportCheckpointRepository.class), movementHistory, transactionTemplate, properties);
+        return new SockService(sockRepository, new SockRowReaders(Map.of(
+                        BatchFormat.XLSX, new StreamingXlsxSockRowReader(),
+                        BatchFormat.CSV, new CsvSockRowReader())), Optional.empty(),
+                new SockQueryCache(properties, meterRegistry), chunkedImportEngine, transactionTemplate,
+                new SockMetrics(meterRegistry), new ConcurrencyRetry(properties, meterRegistry), movementHistory, stockIndex);
     }
 
     @Test
     void registerIncomeShouldAddNewSocks_whenSockDoesNotExist() {
         SockDto sockDto = new SockDto("red", 50, 10);
 
-        when(sockRepository.findByColorAndCottonPart("red", 50)).thenReturn(Optional.empty());
+        when(sockRepository.increaseQuantity("red", 50, 10)).thenReturn(0);
 
         sockService.registerIncome(sockDto);
 
-        ArgumentCaptor<Sock> sockCaptor = ArgumentCaptor.forClass(Sock.class);
-        verify(sockRepository, times(1)).save(sockCaptor.capture());
+        verify(sockRepository, times(1)).addQuantities(Map.of(new SockKey("red", 50), 10));
+    }
+
+    @Test
+    void registerIncomeShouldUpdateQuantity_whenSockExists() {
+        SockDto sockDto = new SockDto("red", 50, 10);
+
+        when(sockRepository.increaseQuantity("red", 50, 10)).thenReturn(1);
 
-        Sock savedSock = sockCaptor.getValue();
-        assertEquals("red", savedSock.getColor());
-        assertEquals(50, savedSock.getCottonPart());
-        assertEquals(10, savedSock.getQuantity());
+        sockService.registerIncome(sockDto);
+
+        verify(sockRepository, never()).addQuantities(anyMap());
+        verify(sockRepository, never()).findByColorAndCottonPart(any(), any());
+        verify(movementHistory).append(MovementSource.REQUEST, Map.of(new SockKey("red", 50), 10), Map.of());
     }
 
     @Test
     void registerOutcomeShouldThrowException_whenSocksNotAvailable() {
         SockDto sockDto = new SockDto("red", 50, 10);
 
-        when(sockRepository.findByColorAndCottonPart("red", 50)).thenReturn(Optional.empty());
+        when(sockRepository.decreaseQuantity("red", 50, 10)).thenReturn(0);
+        when(sockRepository.existsByColorAndCottonPart("red", 50)).thenReturn(true);
+
+        InsufficientSocksException exception =
+                assertThrows(InsufficientSocksException.class, () -> sockService.registerOutcome(sockDto));
+
+        assertEquals("Not enough socks in stock.", exception.getMessage());
+        verify(sockRepository, times(1)).decreaseQuantity("red", 50, 10);
+        verify(movementHistory, never()).append(any(), anyMap(), anyMap());
+    }
+
+    @Test
+    void registerOutcomeShouldThrowException_whenSocksNotFound() {
+        SockDto sockDto = new SockDto("red", 50, 10);
+
+        when(sockRepository.decreaseQuantity("red", 50, 10)).thenReturn(0);
+        when(sockRepository.existsByColorAndCottonPart("red", 50)).thenReturn(false);
+
+        InsufficientSocksException exception =
+                assertThrows(InsufficientSocksException.class, () -> sockService.registerOutcome(sockDto));
+
+        assertEquals("Socks not found.", exception.getMessage());
+    }
+
+    @Test
+    void registerOutcomeShouldRecordInsufficientStock() {
+        when(sockRepository.decreaseQuantity("red", 50, 10)).thenReturn(0);
+        when(sockRepository.existsByColorAndCottonPart("red", 50)).thenReturn(true);
+        when(sockRepository.decreaseQuantity("red", 50, 1)).thenReturn(1);
+
+        assertThrows(InsufficientSocksException.class, () -> sockService.registerOutcome(new SockDto("red", 50, 10)));
+        sockService.registerOutcome(new SockDto("red", 50, 1));
+
+        assertEquals(1, meterRegistry.get(SockMetrics.MOVEMENTS).tags("type", "outcome", "result", "insufficient").timer().count());
+        assertEquals(1, meterRegistry.get(SockMetrics.MOVEMENTS).tags("type", "outcome", "result", "success").timer().count());
+    }
+
+    @Test
+    void registerOutcomeShouldDecreaseQuantity_whenEnoughSocks() {
+        SockDto sockDto = new SockDto("red", 50, 10);
+
+        when(sockRepository.decreaseQuantity("red", 50, 10)).thenReturn(1);
+
+        sockService.registerOutcome(sockDto);
+
+        verify(sockRepository, never()).existsByColorAndCottonPart(any(), any());
+        verify(movementHistory).append(MovementSource.REQUEST, Map.of(), Map.of(new SockKey("red", 50), 10));
+    }
+
+    @Test
+    void registerOutcomeShouldRetry_whenWriteConflicts() {
+        when(sockRepository.decreaseQuantity("red", 50, 10))
+                .thenThrow(new CannotAcquireLockException("deadlock detected"))
+                .thenReturn(1);
+
+        sockService.registerOutcome(new SockDto("red", 50, 10));
+
+        verify(sockRepository, times(2)).decreaseQuantity("red", 50, 10);
+        assertEquals(1, meterRegistry.get(ConcurrencyRetry.RETRIES).counter().count());
+    }
+
+    @Test
+    void registerOutcomeShouldGiveUp_whenConflictsPersist() {
+        when(sockRepository.decreaseQuantity("red", 50, 10))
+                .thenThrow(new OptimisticLockingFailureException("Row was updated by another transaction"));
+
+        assertThrows(OptimisticLockingFailureException.class, () -> sockService.registerOutcome(new SockDto("red", 50, 10)));
+
+        verify(sockRepository, times(5)).decreaseQuantity("red", 50, 10);
+        assertEquals(1, meterRegistry.get(SockMetrics.MOVEMENTS).tags("type", "outcome", "result", "error").timer().count());
+    }
+
+    @Test
+    void registerMovementsShouldNetLinesOfSameItem() {
+        BulkMovementRequest request = new BulkMovementRequest(BulkMovementRequest.Mode.ATOMIC, List.of(
+                new MovementDto(MovementDto.Type.INCOME, "red", 50, 10),
+                new MovementDto(MovementDto.Type.OUTCOME, "blue", 70, 3),
+                new MovementDto(MovementDto.Type.OUTCOME, "red", 50, 4),
+                new MovementDto(MovementDto.Type.OUTCOME, "blue", 70, 2)));
+
+        when(sockRepository.applyQuantities(anyMap())).thenReturn(Set.of());
+
+        BulkMovementResultDto result = sockService.registerMovements(request);
+
+        assertEquals(4, result.applied());
+        assertEquals(0, result.rejected());
+        verify(sockRepository).applyQuantities(Map.of(new SockKey("blue", 70), -5, new SockKey("red", 50), 6));
+        verify(sockRepository, never()).increaseQuantity(any(), any(), any());
+        // The history keeps the gross quantities, not the netted ones
+        verify(movementHistory).append(MovementSource.BULK,
+                Map.of(new SockKey("red", 50), 10),
+                Map.of(new SockKey("blue", 70), 5, new SockKey("red", 50), 4));
+    }
+
+    @Test
+    void registerMovementsShouldRejectWholeRequest_whenOutcomeCannotBeCovered() {
+        BulkMovementRequest request = new BulkMovementRequest(BulkMovementRequest.Mode.ATOMIC, List.of(
+                new MovementDto(MovementDto.Type.INCOME, "red", 50, 10),
+                new MovementDto(MovementDto.Type.OUTCOME, "blue", 70, 3)));
+
+        when(sockRepository.applyQuantities(anyMap())).thenReturn(Set.of(new SockKey("blue", 70)));
+        when(sockRepository.existsByColorAndCottonPart("blue", 70)).thenReturn(true);
 
-        assertThrows(InsufficientSocksException.class, () -> sockService.registerOutcome(sockDto));
+        BulkMovementResultDto result = sockService.registerMovements(request);
 
-        verify(sockRepository, times(1)).findByColorAndCottonPart("red", 50);
+        assertEquals(0, result.applied());
+        assertEquals(1, result.rejected());
+        assertEquals(BulkMovementResultDto.Status.NOT_APPLIED, result.lines().get(0).status());
+        assertEquals("Not enough socks in stock.", result.lines().get(1).error());
+        verify(movementHistory, never()).append(eq(MovementSource.BULK), anyMap(), anyMap());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void registerMovementsShouldApplyAllDeltasInOneKeyOrderedPass() {
+        BulkMovementRequest request = new BulkMovementRequest(BulkMovementRequest.Mode.ATOMIC, List.of(
+                new MovementDto(MovementDto.Type.OUTCOME, "red", 50, 1),
+                new MovementDto(MovementDto.Type.INCOME, "green", 40, 2),
+                new MovementDto(MovementDto.Type.OUTCOME, "blue", 30, 3)));
+
+        when(sockRepository.applyQuantities(anyMap())).thenReturn(Set.of());
+
+        sockService.registerMovements(request);
+
+        ArgumentCaptor<Map<SockKey, Integer>> deltas = ArgumentCaptor.forClass(Map.class);
+        verify(sockRepository).applyQuantities(deltas.capture());
+        assertEquals(List.of(new SockKey("blue", 30), new SockKey("green", 40), new SockKey("red", 50)),
+                List.copyOf(deltas.getValue().keySet()));
+        verify(sockRepository, never()).removeQuantities(anyMap());
+        verify(sockRepository, never()).addQuantities(anyMap());
+    }
+
+    @Test
+    void registerMovementsShouldApplyLinesIndependently_whenModeIsPerLine() {
+        BulkMovementRequest request = new BulkMovementRequest(BulkMovementRequest.Mode.PER_LINE, List.of(
+                new MovementDto(MovementDto.Type.OUTCOME, "blue", 70, 3),
+                new MovementDto(MovementDto.Type.INCOME, "red", 50, 10)));
+
+        when(sockRepository.decreaseQuantity("blue", 70, 3)).thenReturn(0);
+        when(sockRepository.existsByColorAndCottonPart("blue", 70)).thenReturn(false);
+        when(sockRepository.increaseQuantity("red", 50, 10)).thenReturn(1);
+
+        BulkMovementResultDto result = sockService.registerMovements(request);
+
+        assertEquals(BulkMovementResultDto.Status.REJECTED, result.lines().get(0).status());
+        assertEquals("Socks not found.", result.lines().get(0).error());
+        assertEquals(BulkMovementResultDto.Status.APPLIED, result.lines().get(1).status());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getSocksShouldQueryOnePageFromRepository() {
+        PageRequest pageRequest = PageRequest.of(2, 10, Sort.by("color"));
+
+        when(sockRepository.findAll(any(Specification.class), eq(pageRequest))).thenReturn(Page.empty(pageRequest));
+
+        assertEquals(0, sockService.getSocks(null, 30, 70, pageRequest).getTotalElements());
+
+        verify(sockRepository, times(1)).findAll(any(Specification.class), eq(pageRequest));
+        verify(sockRepository, never()).findAll();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void countSocksShouldSumInDatabase() {
+        when(sockRepository.sumQuantity(any(Specification.class))).thenReturn(25L);
+
+        assertEquals(25L, sockService.countSocks("red", CottonOperator.LESS_THAN, 40, null, null));
+        assertEquals(25L, sockService.countSocks("red", CottonOperator.LESS_THAN, 40, null, null));
+
+        verify(sockRepository, times(1)).sumQuantity(any(Specification.class));
+        verify(sockRepository, never()).findAll();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void countSocksShouldReturnCachedTotalUntilAffectedItemChanges() {
+        when(sockRepository.sumQuantity(any(Specification.class))).thenReturn(25L, 35L);
+        when(sockRepository.increaseQuantity(any(), any(), any())).thenReturn(1);
+
+        assertEquals(25L, sockService.countSocks("red", CottonOperator.MORE_THAN, 40, null, null));
+        sockService.registerIncome(new SockDto("red", 30, 10));
+        sockService.registerIncome(new SockDto("blue", 50, 10));
+        assertEquals(25L, sockService.countSocks("red", CottonOperator.MORE_THAN, 40, null, null));
+
+        sockService.registerIncome(new SockDto("red", 50, 10));
+        assertEquals(35L, sockService.countSocks("red", CottonOperator.MORE_THAN, 40, null, null));
+
+        verify(sockRepository, times(2)).sumQuantity(any(Specification.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void countSocksShouldSumInStockIndex_whenEnabled() {
+        StockIndex stockIndex = new StockIndex(sockRepository);
+        sockService = newSockService(Optional.of(stockIndex));
+        when(sockRepository.increaseQuantity(any(), any(), any())).thenReturn(1);
+        when(sockRepository.decreaseQuantity(any(), any(), any())).thenReturn(1);
+
+        sockService.registerIncome(new SockDto("red", 30, 10));
+        sockService.registerIncome(new SockDto("red", 50, 20));
+        sockService.registerOutcome(new SockDto("red", 50, 5));
+        sockService.registerIncome(new SockDto("blue", 50, 7));
+
+        assertEquals(15L, sockService.countSocks("red", CottonOperator.MORE_THAN, 30, null, null));
+        assertEquals(10L, sockService.countSocks("red", CottonOperator.LESS_THAN, 50, null, null));
+        assertEquals(22L, sockService.countSocks(null, CottonOperator.EQUAL, 50, null, null));
+        assertEquals(15L, sockService.countSocks("red", null, null, 40, 60));
+        assertEquals(0L, sockService.countSocks("red", CottonOperator.MORE_THAN, 30, 10, 40));
+        assertEquals(0L, sockService.countSocks("green", null, null, null, null));
+        verify(sockRepository, never()).sumQuantity(any(Specification.class));
+    }
+
+    @Test
+    void countSocksShouldThrowException_whenOperatorHasNoCottonPart() {
+        assertThrows(InvalidRequestException.class,
+                () -> sockService.countSocks("red", CottonOperator.EQUAL, null, null, null));
     }
 
     @Test
@@ -85,13 +357,37 @@ class SockServiceTest {
         workbook.close();
 
         MultipartFile file = mock(MultipartFile.class);
+        when(file.getOriginalFilename()).thenReturn("socks.xlsx");
         when(file.getInputStream()).thenReturn(new ByteArrayInputStream(out.toByteArray()));
 
-        System.out.println("Тест: Перед вызовом uploadBatch");
         sockService.uploadBatch(file);
-        System.out.println("Тест: После вызова uploadBatch");
 
-        verify(sockRepository, times(1)).saveAll(anyList());
+        verify(sockRepository, times(1)).addQuantities(Map.of(
+                new SockKey("red", 50), 10,
+                new SockKey("blue", 70), 5));
+        verify(sockRepository, never()).save(any());
+    }
+
+    @Test
+    void uploadBatchShouldSaveSocksFromCsvFile() throws Exception {
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.getOriginalFilename()).thenReturn("socks.csv");
+        when(file.getInputStream()).thenReturn(new ByteArrayInputStream(
+                "color,cottonPart,quantity\nred,50,10\nblue,70,5\nred,50,3\n".getBytes(StandardCharsets.UTF_8)));
+
+        sockService.uploadBatch(file);
+
+        verify(sockRepository, times(1)).addQuantities(Map.of(
+                new SockKey("red", 50), 13,
+                new SockKey("blue", 70), 5));
+    }
+
+    @Test
+    void uploadBatchShouldThrowException_whenFormatIsUnsupported() {
+        MultipartFile file = mock(MultipartFile.class);
+        when(file.getOriginalFilename()).thenReturn("socks.txt");
+
+        assertThrows(FileProcessingException.class, () -> sockService.uploadBatch(file));
     }
 
 }
@@ -0,0 +1,63 @@
+package com.backspark.socks.service;
+
+import com.backspark.socks.dto.TurnoverDto;
+import com.backspark.socks.dto.TurnoverGranularity;
+import com.backspark.socks.exception.InvalidRequestException;
+import com.backspark.socks.repository.MovementHistoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class StockAnalyticsServiceTest {
+
+    private MovementHistoryRepository movementHistory;
+    private StockAnalyticsService stockAnalyticsService;
+
+    @BeforeEach
+    void setUp() {
+        movementHistory = mock(MovementHistoryRepository.class);
+        stockAnalyticsService = new StockAnalyticsService(movementHistory);
+    }
+
+    @Test
+    void getTurnoverShouldWidenPeriodToWholeBuckets() {
+        List<TurnoverDto> turnover = List.of(new TurnoverDto(Instant.parse("2024-03-01T10:00:00Z"), "red", 40, 49, 12, 5));
+        when(movementHistory.turnover(TurnoverGranularity.HOUR, Instant.parse("2024-03-01T10:00:00Z"),
+                Instant.parse("2024-03-01T13:00:00Z"), "red", 10)).thenReturn(turnover);
+
+        List<TurnoverDto> result = stockAnalyticsService.getTurnover(TurnoverGranularity.HOUR,
+                Instant.parse("2024-03-01T10:15:00Z"), Instant.parse("2024-03-01T12:30:00Z"), "red", 10);
+
+        assertEquals(turnover, result);
+    }
+
+    @Test
+    void getTurnoverShouldKeepPeriodEndingOnBucketBoundary() {
+        stockAnalyticsService.getTurnover(TurnoverGranularity.DAY,
+                Instant.parse("2024-03-01T00:00:00Z"), Instant.parse("2024-03-08T00:00:00Z"), null, 1);
+
+        verify(movementHistory).turnover(TurnoverGranularity.DAY, Instant.parse("2024-03-01T00:00:00Z"),
+                Instant.parse("2024-03-08T00:00:00Z"), null, 1);
+    }
+
+    @Test
+    void getTurnoverShouldRejectInvalidPeriods() {
+        Instant from = Instant.parse("2024-03-01T00:00:00Z");
+
+        assertThrows(InvalidRequestException.class, () ->
+                stockAnalyticsService.getTurnover(TurnoverGranularity.DAY, from, from, null, 10));
+        assertThrows(InvalidRequestException.class, () ->
+                stockAnalyticsService.getTurnover(TurnoverGranularity.HOUR, from, Instant.parse("2024-06-01T00:00:00Z"), null, 10));
+        assertThrows(InvalidRequestException.class, () ->
+                stockAnalyticsService.getTurnover(TurnoverGranularity.DAY, from, Instant.parse("2024-03-02T00:00:00Z"), null, 0));
+        verify(movementHistory, never()).turnover(any(), any(), any(), any(), anyInt());
+    }
+}
@@ -0,0 +1,129 @@
+package com.backspark.socks.service.admission;
+
+import com.backspark.socks.config.SocksProperties;
+import com.backspark.socks.exception.RequestThrottledException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AdmissionControlTest {
+
+    private SocksProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new SocksProperties();
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void admitShouldRejectClientOverItsRate() {
+        properties.getAdmission().setRequestsPerSecond(1);
+        properties.getAdmission().setBurst(2);
+        AdmissionControl admissionControl = new AdmissionControl(properties, 10, meterRegistry);
+
+        admissionControl.admit("a", AdmissionControl.Lane.READ).exit();
+        admissionControl.admit("a", AdmissionControl.Lane.WRITE).exit();
+        RequestThrottledException exception = assertThrows(RequestThrottledException.class,
+                () -> admissionControl.admit("a", AdmissionControl.Lane.WRITE));
+        admissionControl.admit("b", AdmissionControl.Lane.WRITE).exit();
+
+        assertEquals(1, exception.getRetryAfterSeconds());
+        assertEquals(1, rejections("write", "rate_limit"));
+    }
+
+    @Test
+    void admitShouldRejectWhenLaneIsFull() {
+        properties.getAdmission().getBatch().setMaxConcurrent(1);
+        properties.getAdmission().getBatch().setMaxWait(Duration.ZERO);
+        AdmissionControl admissionControl = new AdmissionControl(properties, 10, meterRegistry);
+
+        Bulkhead bulkhead = admissionControl.admit("a", AdmissionControl.Lane.BATCH);
+        RequestThrottledException exception = assertThrows(RequestThrottledException.class,
+                () -> admissionControl.admit("b", AdmissionControl.Lane.BATCH));
+
+        assertEquals(30, exception.getRetryAfterSeconds());
+        assertEquals(1, rejections("batch", "bulkhead"));
+        assertEquals(1, meterRegistry.get(AdmissionControl.ACTIVE).tag("lane", "batch").gauge().value());
+        // Other lanes are not affected by a full one
+        admissionControl.admit("b", AdmissionControl.Lane.WRITE).exit();
+
+        bulkhead.exit();
+        admissionControl.admit("b", AdmissionControl.Lane.BATCH).exit();
+        assertEquals(0, meterRegistry.get(AdmissionControl.ACTIVE).tag("lane", "batch").gauge().value());
+    }
+
+    @Test
+    void admitShouldWaitForSlotUpToMaxWait() throws Exception {
+        properties.getAdmission().getWrites().setMaxConcurrent(1);
+        properties.getAdmission().getWrites().setMaxWait(Duration.ofSeconds(10));
+        AdmissionControl admissionControl = new AdmissionControl(properties, 10, meterRegistry);
+        Bulkhead bulkhead = admissionControl.admit("a", AdmissionControl.Lane.WRITE);
+
+        Thread waiter = new Thread(() -> admissionControl.admit("b", AdmissionControl.Lane.WRITE).exit());
+        waiter.start();
+        while (meterRegistry.get(AdmissionControl.QUEUE).tag("lane", "write").gauge().value() == 0) {
+            Thread.onSpinWait();
+        }
+        bulkhead.exit();
+        waiter.join(10_000);
+
+        assertEquals(0, meterRegistry.get(AdmissionControl.QUEUE).tag("lane", "write").gauge().value());
+        assertEquals(0, rejections("write", "bulkhead"));
+    }
+
+    @Test
+    void admitShouldNotLimitRate_whenRequestsPerSecondIsZero() {
+        properties.getAdmission().setRequestsPerSecond(0);
+        properties.getAdmission().setBurst(1);
+        AdmissionControl admissionControl = new AdmissionControl(properties, 10, meterRegistry);
+
+        for (int i = 0; i < 100; i++) {
+            admissionControl.admit("a", AdmissionControl.Lane.READ).exit();
+        }
+    }
+
+    @Test
+    void bulkheadsShouldBeSizedFromConnectionPool() {
+        AdmissionControl defaultPool = new AdmissionControl(properties, 10, new SimpleMeterRegistry());
+        assertEquals(10, defaultPool.maxConcurrent(AdmissionControl.Lane.WRITE));
+        assertEquals(4, defaultPool.maxConcurrent(AdmissionControl.Lane.READ));
+        assertEquals(1, defaultPool.maxConcurrent(AdmissionControl.Lane.BATCH));
+
+        AdmissionControl virtualPool = new AdmissionControl(properties, 32, new SimpleMeterRegistry());
+        assertEquals(32, virtualPool.maxConcurrent(AdmissionControl.Lane.WRITE));
+        assertEquals(12, virtualPool.maxConcurrent(AdmissionControl.Lane.READ));
+        assertEquals(4, virtualPool.maxConcurrent(AdmissionControl.Lane.BATCH));
+    }
+
+    @Test
+    void constructorShouldRejectBulkheadsEatingWriteReserve() {
+        properties.getAdmission().getReads().setMaxConcurrent(8);
+
+        assertThrows(IllegalArgumentException.class, () -> new AdmissionControl(properties, 10, meterRegistry));
+
+        properties.getAdmission().setWriteReserve(0);
+        assertEquals(8, new AdmissionControl(properties, 10, meterRegistry).maxConcurrent(AdmissionControl.Lane.READ));
+    }
+
+    @Test
+    void clientShouldBeAddressUnlessKeyIsTrusted() {
+        properties.getAdmission().setTrustedKeys(Set.of("tenant-a"));
+        AdmissionControl admissionControl = new AdmissionControl(properties, 10, meterRegistry);
+
+        assertEquals("key:tenant-a", admissionControl.client("tenant-a", "10.0.0.1"));
+        assertEquals("ip:10.0.0.1", admissionControl.client("tenant-b", "10.0.0.1"));
+        assertEquals("ip:10.0.0.1", admissionControl.client(null, "10.0.0.1"));
+    }
+
+    private double rejections(String lane, String reason) {
+        return meterRegistry.get(AdmissionControl.REJECTIONS).tag("lane", lane).tag("reason", reason).counter().count();
+    }
+}
@@ -0,0 +1,60 @@
+package com.backspark.socks.service.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientRateLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void tryAcquireShouldAdmitBurstThenReportWait() {
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(10, 3, 100, clock::get);
+
+        assertEquals(0, rateLimiter.tryAcquire("a"));
+        assertEquals(0, rateLimiter.tryAcquire("a"));
+        assertEquals(0, rateLimiter.tryAcquire("a"));
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), rateLimiter.tryAcquire("a"));
+    }
+
+    @Test
+    void tryAcquireShouldRefillAtSustainedRate() {
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(10, 1, 100, clock::get);
+        assertEquals(0, rateLimiter.tryAcquire("a"));
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(60));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(40), rateLimiter.tryAcquire("a"));
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(40));
+        assertEquals(0, rateLimiter.tryAcquire("a"));
+    }
+
+    @Test
+    void tryAcquireShouldNotRefillAboveBurst() {
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(10, 2, 100, clock::get);
+        assertEquals(0, rateLimiter.tryAcquire("a"));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(60));
+
+        assertEquals(0, rateLimiter.tryAcquire("a"));
+        assertEquals(0, rateLimiter.tryAcquire("a"));
+        assertTrue(rateLimiter.tryAcquire("a") > 0);
+    }
+
+    @Test
+    void tryAcquireShouldKeepClientsApart() {
+        ClientRateLimiter rateLimiter = new ClientRateLimiter(10, 1, 100, clock::get);
+
+        assertEquals(0, rateLimiter.tryAcquire("a"));
+        assertTrue(rateLimiter.tryAcquire("a") > 0);
+
+        assertEquals(0, rateLimiter.tryAcquire("b"));
+        assertEquals(2, rateLimiter.clients());
+    }
+}
@@ -0,0 +1,179 @@
+package com.backspark.socks.service.batch;
+
+import com.backspark.socks.config.SocksProperties;
+import com.backspark.socks.exception.FileProcessingException;
+import com.backspark.socks.exception.ImportRejectedException;
+import com.backspark.socks.model.ImportCheckpoint;
+import com.backspark.socks.model.MovementSource;
+import com.backspark.socks.model.SockKey;
+import com.backspark.socks.repository.ImportCheckpointRepository;
+import com.backspark.socks.repository.ImportStagingRepository;
+import com.backspark.socks.repository.MovementHistoryRepository;
+import com.backspark.socks.repository.SockRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ChunkedImportEngineTest {
+
+    private final SockRepository sockRepository = mock(SockRepository.class);
+    private final ImportStagingRepository stagingRepository = mock(ImportStagingRepository.class);
+    private final ImportCheckpointRepository checkpointRepository = mock(ImportCheckpointRepository.class);
+    private final MovementHistoryRepository movementHistory = mock(MovementHistoryRepository.class);
+    private ChunkedImportEngine engine;
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void importRowsShouldCommitEveryChunkSeparately() throws Exception {
+        engine = createEngine(SocksProperties.CommitMode.PER_CHUNK);
+        List<Map<SockKey, Integer>> written = new ArrayList<>();
+        doAnswer(invocation -> {
+            Map<SockKey, Integer> chunk = invocation.getArgument(0);
+            // Rows are upserted in the order every other writer locks them in
+            assertEquals(chunk.keySet().stream().sorted(SockKey.KEY_ORDER).toList(), List.copyOf(chunk.keySet()));
+            written.add(new HashMap<>(chunk));
+            return 1;
+        }).when(sockRepository).addQuantities(anyMap());
+        BatchProgress progress = new BatchProgress();
+
+        long rows = engine.importRows(input(), rows(25), progress, quantities -> {
+        });
+
+        assertEquals(25, rows);
+        assertEquals(3, written.size());
+        Map<SockKey, Integer> total = new HashMap<>();
+        written.forEach(chunk -> chunk.forEach((key, quantity) -> total.merge(key, quantity, Integer::sum)));
+        assertEquals(Map.of(new SockKey("red", 10), 13, new SockKey("blue", 20), 12), total);
+        assertEquals(25, progress.getRowsApplied());
+        verify(movementHistory, times(3)).append(eq(MovementSource.IMPORT), anyMap(), eq(Map.of()));
+    }
+
+    @Test
+    void importRowsShouldMergeStagedChunksOnce() throws Exception {
+        engine = createEngine(SocksProperties.CommitMode.STAGED);
+        List<Map<SockKey, Integer>> committed = new ArrayList<>();
+
+        engine.importRows(input(), rows(25), new BatchProgress(), committed::add);
+
+        verify(stagingRepository, times(3)).stage(anyString(), anyMap());
+        verify(stagingRepository, times(1)).merge(anyString());
+        verify(sockRepository, never()).addQuantities(anyMap());
+        verify(movementHistory).append(MovementSource.IMPORT, Map.of(new SockKey("red", 10), 13, new SockKey("blue", 20), 12), Map.of());
+        assertEquals(List.of(Map.of(new SockKey("red", 10), 13, new SockKey("blue", 20), 12)), committed);
+    }
+
+    @Test
+    void importRowsShouldDiscardStagedRows_whenRowIsInvalid() {
+        engine = createEngine(SocksProperties.CommitMode.STAGED);
+        SockRowReader reader = (inputStream, handler) -> {
+            handler.onRow(1, "red", 10, 1);
+            handler.onRow(2, "red", 150, 1);
+            return 2;
+        };
+        BatchProgress progress = new BatchProgress();
+
+        assertThrows(FileProcessingException.class, () -> engine.importRows(input(), reader, progress, quantities -> {
+        }));
+
+        verify(stagingRepository, never()).merge(any());
+        verify(stagingRepository, times(1)).delete(anyString());
+        assertEquals(2, progress.getRowsRejected());
+    }
+
+    @Test
+    void importRowsShouldResumeAfterCheckpoint() throws Exception {
+        engine = createEngine(SocksProperties.CommitMode.PER_CHUNK);
+        when(checkpointRepository.findById("sha256:abc"))
+                .thenReturn(Optional.of(new ImportCheckpoint("sha256:abc", 10L, false, Instant.now())));
+        when(checkpointRepository.advance(eq("sha256:abc"), anyLong(), anyLong(), any())).thenReturn(1);
+        when(checkpointRepository.complete(eq("sha256:abc"), anyLong(), any())).thenReturn(1);
+        BatchProgress progress = new BatchProgress();
+
+        long rows = engine.importRows(input(), rows(25), progress, "sha256:abc", quantities -> {
+        });
+
+        assertEquals(25, rows);
+        assertEquals(15, progress.getRowsApplied());
+        assertEquals(10, progress.getRowsSkipped());
+        verify(checkpointRepository).advance(eq("sha256:abc"), eq(10L), eq(20L), any());
+        verify(checkpointRepository).advance(eq("sha256:abc"), eq(20L), eq(25L), any());
+        verify(checkpointRepository).complete(eq("sha256:abc"), eq(25L), any());
+    }
+
+    @Test
+    void importRowsShouldSkipCompletedImport() throws Exception {
+        engine = createEngine(SocksProperties.CommitMode.PER_CHUNK);
+        when(checkpointRepository.findById("sha256:abc"))
+                .thenReturn(Optional.of(new ImportCheckpoint("sha256:abc", 25L, true, Instant.now())));
+        BatchProgress progress = new BatchProgress();
+
+        long rows = engine.importRows(input(), rows(25), progress, "sha256:abc", quantities -> {
+        });
+
+        assertEquals(0, rows);
+        assertTrue(progress.isAlreadyImported());
+        verify(sockRepository, never()).addQuantities(anyMap());
+    }
+
+    @Test
+    void importRowsShouldFail_whenCheckpointWasAdvancedConcurrently() {
+        engine = createEngine(SocksProperties.CommitMode.PER_CHUNK);
+        when(checkpointRepository.saveAndFlush(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(checkpointRepository.advance(anyString(), anyLong(), anyLong(), any())).thenReturn(0);
+
+        assertThrows(ImportRejectedException.class, () -> engine.importRows(input(), rows(25), new BatchProgress(),
+                "key:upload-1", quantities -> {
+                }));
+    }
+
+    private ChunkedImportEngine createEngine(SocksProperties.CommitMode commitMode) {
+        SocksProperties properties = new SocksProperties();
+        properties.getBatch().setRowsPerChunk(10);
+        properties.getBatch().setParallelism(2);
+        properties.getBatch().setCommitMode(commitMode);
+        return new ChunkedImportEngine(sockRepository, stagingRepository, checkpointRepository, movementHistory,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), properties);
+    }
+
+    private static InputStream input() {
+        return new ByteArrayInputStream(new byte[0]);
+    }
+
+    // Odd rows are red, even rows are blue, one sock each
+    private static SockRowReader rows(int count) {
+        return (inputStream, handler) -> {
+            for (int i = 1; i <= count; i++) {
+                if (i % 2 == 1) {
+                    handler.onRow(i, "red", 10, 1);
+                } else {
+                    handler.onRow(i, "blue", 20, 1);
+                }
+            }
+            return count;
+        };
+    }
+}
@@ -0,0 +1,81 @@
+package com.backspark.socks.service.batch;
+
+import com.backspark.socks.exception.FileProcessingException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvSockRowReaderTest {
+
+    private final CsvSockRowReader reader = new CsvSockRowReader();
+
+    @Test
+    void readShouldSkipHeaderAndParseRows() throws Exception {
+        List<String> rows = read("color,cottonPart,quantity\r\nred,50,10\r\n\r\n\"dark \"\"navy\"\", blue\",70,5\r\ngreen , 0 , 100.0");
+
+        assertEquals(List.of("1:red:50:10", "3:dark \"navy\", blue:70:5", "4:green:0:100"), rows);
+    }
+
+    @Test
+    void readShouldParseFileWithoutHeader() throws Exception {
+        assertEquals(List.of("0:red:50:10"), read("red,50,10\n"));
+    }
+
+    @Test
+    void readShouldHandleRowsSplitAcrossReads() throws Exception {
+        StringBuilder file = new StringBuilder("color,cottonPart,quantity\n");
+        for (int i = 0; i < 1000; i++) {
+            file.append("red,").append(i % 101).append(",").append(i).append('\n');
+        }
+        List<String> colors = new ArrayList<>();
+        long count = reader.read(oneByteAtATime(file.toString()), (rowNum, color, cottonPart, quantity) -> colors.add(color));
+
+        assertEquals(1000, count);
+        assertSame(colors.get(0), colors.get(999));
+    }
+
+    @Test
+    void readShouldThrowException_whenNumberIsInvalid() {
+        FileProcessingException e = assertThrows(FileProcessingException.class,
+                () -> read("color,cottonPart,quantity\nred,50,ten\n"));
+        assertEquals("Invalid row 2: 'ten' is not a number", e.getMessage());
+    }
+
+    @Test
+    void readShouldThrowException_whenNumberIsNotInteger() {
+        FileProcessingException e = assertThrows(FileProcessingException.class,
+                () -> read("color,cottonPart,quantity\nred,50,12.7\n"));
+        assertEquals("Invalid row 2: '12.7' is not an integer", e.getMessage());
+    }
+
+    @Test
+    void readShouldThrowException_whenColumnIsMissing() {
+        assertThrows(FileProcessingException.class, () -> read("red,50\n"));
+    }
+
+    private List<String> read(String content) throws IOException {
+        List<String> rows = new ArrayList<>();
+        reader.read(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                (rowNum, color, cottonPart, quantity) -> rows.add(rowNum + ":" + color + ":" + cottonPart + ":" + quantity));
+        return rows;
+    }
+
+    private static InputStream oneByteAtATime(String content) {
+        return new FilterInputStream(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8))) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+    }
+}
@@ -0,0 +1,54 @@
+package com.backspark.socks.service.batch;
+
+import com.backspark.socks.exception.FileProcessingException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class NdjsonSockRowReaderTest {
+
+    private final NdjsonSockRowReader reader = new NdjsonSockRowReader();
+
+    @Test
+    void readShouldParseObjectsInAnyKeyOrder() throws Exception {
+        List<String> rows = read("""
+                {"color":"red","cottonPart":50,"quantity":10}
+
+                { "quantity": 5, "note": "new, \\"spring\\"", "active": true, "cottonPart": 70, "color": "blue" }
+                {"color":"caf\\u00e9","cottonPart":0,"quantity":1}""");
+
+        assertEquals(List.of("0:red:50:10", "2:blue:70:5", "3:café:0:1"), rows);
+    }
+
+    @Test
+    void readShouldThrowException_whenFieldIsMissing() {
+        FileProcessingException e = assertThrows(FileProcessingException.class,
+                () -> read("{\"color\":\"red\",\"quantity\":10}\n"));
+        assertEquals("Invalid row 1: cottonPart is missing", e.getMessage());
+    }
+
+    @Test
+    void readShouldThrowException_whenLineIsNotObject() {
+        assertThrows(FileProcessingException.class, () -> read("[\"red\",50,10]\n"));
+    }
+
+    @Test
+    void readShouldThrowException_whenNumberIsInvalid() {
+        assertThrows(FileProcessingException.class,
+                () -> read("{\"color\":\"red\",\"cottonPart\":\"fifty\",\"quantity\":10}\n"));
+    }
+
+    private List<String> read(String content) throws IOException {
+        List<String> rows = new ArrayList<>();
+        reader.read(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)),
+                (rowNum, color, cottonPart, quantity) -> rows.add(rowNum + ":" + color + ":" + cottonPart + ":" + quantity));
+        return rows;
+    }
+}
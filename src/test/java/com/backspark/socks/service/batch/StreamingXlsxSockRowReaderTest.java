@@ -0,0 +1,123 @@
+package com.backspark.socks.service.batch;
+
+import com.backspark.socks.exception.FileProcessingException;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StreamingXlsxSockRowReaderTest {
+
+    private final StreamingXlsxSockRowReader reader = new StreamingXlsxSockRowReader();
+
+    @Test
+    void readShouldReturnSameRowsAsWorkbookReader() throws Exception {
+        byte[] file = createFile(new Object[][]{
+                {"red", 50, 10},
+                {"blue", 70, 5},
+                {"green", 0, 100}
+        });
+
+        List<String> streamed = new ArrayList<>();
+        long streamedRows = reader.read(new ByteArrayInputStream(file),
+                (rowNum, color, cottonPart, quantity) -> streamed.add(rowNum + ":" + color + ":" + cottonPart + ":" + quantity));
+
+        List<String> loaded = new ArrayList<>();
+        new WorkbookXlsxSockRowReader().read(new ByteArrayInputStream(file),
+                (rowNum, color, cottonPart, quantity) -> loaded.add(rowNum + ":" + color + ":" + cottonPart + ":" + quantity));
+
+        assertEquals(3, streamedRows);
+        assertEquals(List.of("1:red:50:10", "2:blue:70:5", "3:green:0:100"), streamed);
+        assertEquals(loaded, streamed);
+    }
+
+    @Test
+    void readShouldThrowException_whenNumberIsInvalid() throws Exception {
+        byte[] file = createFile(new Object[][]{{"red", "fifty", 10}});
+
+        assertThrows(FileProcessingException.class,
+                () -> reader.read(new ByteArrayInputStream(file), (rowNum, color, cottonPart, quantity) -> {
+                }));
+    }
+
+    @Test
+    void readShouldUseRawValue_whenCellHasDisplayFormat() throws Exception {
+        byte[] file = createFile(new Object[][]{{"red", 50, 1000}}, "#,##0");
+
+        List<Integer> quantities = new ArrayList<>();
+        reader.read(new ByteArrayInputStream(file), (rowNum, color, cottonPart, quantity) -> quantities.add(quantity));
+
+        assertEquals(List.of(1000), quantities);
+    }
+
+    @Test
+    void readShouldThrowException_whenNumberIsNotInteger() throws Exception {
+        // Displayed as 13, but must not be imported as 12 or 13
+        byte[] file = createFile(new Object[][]{{"red", 50, 12.7}}, "0");
+
+        FileProcessingException exception = assertThrows(FileProcessingException.class,
+                () -> reader.read(new ByteArrayInputStream(file), (rowNum, color, cottonPart, quantity) -> {
+                }));
+        assertEquals("Invalid row 2: 12.7 is not an integer", exception.getMessage());
+    }
+
+    @Test
+    void readShouldThrowException_whenNumberIsOutOfRange() throws Exception {
+        byte[] file = createFile(new Object[][]{{"red", 50, 3e9}});
+
+        FileProcessingException exception = assertThrows(FileProcessingException.class,
+                () -> reader.read(new ByteArrayInputStream(file), (rowNum, color, cottonPart, quantity) -> {
+                }));
+        assertEquals("Invalid row 2: number is too large", exception.getMessage());
+    }
+
+    private static byte[] createFile(Object[][] rows) throws Exception {
+        return createFile(rows, null);
+    }
+
+    private static byte[] createFile(Object[][] rows, String numberFormat) throws Exception {
+        try (Workbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet("Sheet1");
+            CellStyle numberStyle = workbook.createCellStyle();
+            if (numberFormat != null) {
+                numberStyle.setDataFormat(workbook.createDataFormat().getFormat(numberFormat));
+            }
+
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("color");
+            header.createCell(1).setCellValue("cottonPart");
+            header.createCell(2).setCellValue("quantity");
+
+            for (int i = 0; i < rows.length; i++) {
+                Row row = sheet.createRow(i + 1);
+                for (int j = 0; j < rows[i].length; j++) {
+                    Object value = rows[i][j];
+                    if (value instanceof Number number) {
+                        Cell cell = row.createCell(j);
+                        cell.setCellValue(number.doubleValue());
+                        if (numberFormat != null) {
+                            cell.setCellStyle(numberStyle);
+                        }
+                    } else {
+                        row.createCell(j).setCellValue(value.toString());
+                    }
+                }
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+}
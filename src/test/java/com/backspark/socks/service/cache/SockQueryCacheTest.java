@@ -0,0 +1,105 @@
+package com.backspark.socks.service.cache;
+
+import com.backspark.socks.config.SocksProperties;
+import com.backspark.socks.dto.CottonOperator;
+import com.backspark.socks.model.SockKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SockQueryCacheTest {
+
+    private final SockQueryCache cache = new SockQueryCache(new SocksProperties(), new SimpleMeterRegistry());
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void invalidateShouldRemoveOnlyEntriesMatchingChangedItems() {
+        total("red", CottonOperator.MORE_THAN, 40);
+        total("red", CottonOperator.LESS_THAN, 40);
+        total("blue", CottonOperator.MORE_THAN, 40);
+
+        cache.invalidate(new SockKey("red", 50));
+
+        total("red", CottonOperator.MORE_THAN, 40);
+        total("red", CottonOperator.LESS_THAN, 40);
+        total("blue", CottonOperator.MORE_THAN, 40);
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void invalidateShouldRemoveEntriesWithoutColorFilter() {
+        total(null, CottonOperator.MORE_THAN, 40);
+        total(null, CottonOperator.LESS_THAN, 40);
+
+        cache.invalidate(List.of(new SockKey("green", 60)));
+
+        total(null, CottonOperator.MORE_THAN, 40);
+        total(null, CottonOperator.LESS_THAN, 40);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void getShouldNotCacheResult_whenItemChangedDuringLoad() {
+        long stale = cache.getTotal("red", null, null, null, null, () -> {
+            // The write commits and invalidates while the query still runs
+            cache.invalidate(new SockKey("red", 50));
+            return 10L;
+        });
+
+        long fresh = cache.getTotal("red", null, null, null, null, () -> 15L);
+
+        assertEquals(10L, stale);
+        assertEquals(15L, fresh);
+    }
+
+    @Test
+    void getShouldCacheResult_whenOtherColorChangedDuringLoad() {
+        cache.getTotal("red", null, null, null, null, () -> {
+            cache.invalidate(new SockKey("blue", 50));
+            return 10L;
+        });
+
+        assertEquals(10L, cache.getTotal("red", null, null, null, null, () -> 15L));
+    }
+
+    @Test
+    void entryShouldBeInvalidated_whenCachedAgainAfterInvalidation() {
+        total("red", null, null);
+        cache.invalidate(new SockKey("red", 50));
+        total("red", null, null);
+
+        cache.invalidate(new SockKey("red", 50));
+        total("red", null, null);
+
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void totalKeyShouldClampBounds_whenOperatorOverflows() {
+        total("red", CottonOperator.MORE_THAN, Integer.MAX_VALUE);
+        total("red", CottonOperator.LESS_THAN, Integer.MIN_VALUE);
+
+        // Both ranges are empty and share one entry; no change of the color can affect it
+        cache.invalidate(new SockKey("red", 0));
+        cache.invalidate(new SockKey("red", 100));
+        total("red", CottonOperator.MORE_THAN, Integer.MAX_VALUE);
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void totalKeyShouldShareEntryOfEqualRanges() {
+        total("red", CottonOperator.MORE_THAN, 99);
+        cache.getTotal("red", null, null, 100, 500, () -> (long) loads.incrementAndGet());
+
+        assertEquals(1, loads.get());
+    }
+
+    private long total(String color, CottonOperator operator, Integer cottonPart) {
+        return cache.getTotal(color, operator, cottonPart, null, null, () -> (long) loads.incrementAndGet());
+    }
+}
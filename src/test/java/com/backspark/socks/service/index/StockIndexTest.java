@@ -0,0 +1,99 @@
+package com.backspark.socks.service.index;
+
+import com.backspark.socks.model.SockKey;
+import com.backspark.socks.repository.SockRepository;
+import com.backspark.socks.repository.SockRepositoryCustom.SockExportHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class StockIndexTest {
+
+    private SockRepository sockRepository;
+    private StockIndex stockIndex;
+
+    @BeforeEach
+    void setUp() {
+        sockRepository = mock(SockRepository.class);
+        stockIndex = new StockIndex(sockRepository);
+    }
+
+    @Test
+    void sumShouldAddQuantitiesOfCottonRange() {
+        stockIndex.apply(Map.of(new SockKey("red", 0), 1, new SockKey("red", 50), 10, new SockKey("red", 100), 100));
+        stockIndex.apply(new SockKey("red", 50), -4);
+
+        assertEquals(107, stockIndex.sum("red", 0, 100));
+        assertEquals(6, stockIndex.sum("red", 50, 50));
+        assertEquals(7, stockIndex.sum("red", 0, 99));
+        assertEquals(106, stockIndex.sum("red", 1, 100));
+        assertEquals(0, stockIndex.sum("red", 51, 99));
+    }
+
+    @Test
+    void sumShouldCoverAllColors_whenColorIsNull() {
+        stockIndex.apply(new SockKey("red", 30), 5);
+        stockIndex.apply(new SockKey("blue", 30), 7);
+        stockIndex.apply(new SockKey("blue", 80), 2);
+
+        assertEquals(12, stockIndex.sum(null, 0, 50));
+        assertEquals(14, stockIndex.sum(null, 0, 100));
+        assertEquals(9, stockIndex.sum("blue", 0, 100));
+    }
+
+    @Test
+    void sumShouldReturnZero_whenColorIsUnknownOrRangeIsEmpty() {
+        stockIndex.apply(new SockKey("red", 30), 5);
+
+        assertEquals(0, stockIndex.sum("green", 0, 100));
+        assertEquals(0, stockIndex.sum("red", 40, 20));
+    }
+
+    @Test
+    void sumShouldClampBounds() {
+        stockIndex.apply(new SockKey("red", 0), 3);
+        stockIndex.apply(new SockKey("red", 100), 4);
+
+        assertEquals(7, stockIndex.sum("red", -10, 1000));
+        assertEquals(0, stockIndex.sum("red", 101, 200));
+    }
+
+    @Test
+    void applyShouldKeepColorsApart_whenManyColorsAreAdded() {
+        for (int color = 0; color < 100; color++) {
+            stockIndex.apply(new SockKey("color-" + color, color), color);
+        }
+
+        assertEquals(42, stockIndex.sum("color-42", 0, 100));
+        assertEquals(99 * 100 / 2, stockIndex.sum(null, 0, 100));
+    }
+
+    @Test
+    void applyShouldRejectCottonPartOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> stockIndex.apply(new SockKey("red", 101), 1));
+    }
+
+    @Test
+    void loadShouldReplaceContentWithDatabaseStock() throws Exception {
+        stockIndex.apply(new SockKey("stale", 10), 99);
+        when(sockRepository.exportSocks(isNull(), isNull(), isNull(), any())).thenAnswer(invocation -> {
+            SockExportHandler handler = invocation.getArgument(3);
+            handler.onSock("red", 20, 5);
+            handler.onSock("red", 60, 8);
+            return 2L;
+        });
+
+        stockIndex.load();
+
+        assertEquals(0, stockIndex.sum("stale", 0, 100));
+        assertEquals(5, stockIndex.sum("red", 0, 50));
+        assertEquals(13, stockIndex.sum(null, 0, 100));
+    }
+}
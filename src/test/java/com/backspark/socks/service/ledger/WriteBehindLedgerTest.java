@@ -0,0 +1,241 @@
+package com.backspark.socks.service.ledger;
+
+import com.backspark.socks.config.SocksProperties;
+import com.backspark.socks.exception.InsufficientSocksException;
+import com.backspark.socks.exception.InvalidRequestException;
+import com.backspark.socks.model.LedgerCheckpoint;
+import com.backspark.socks.model.MovementSource;
+import com.backspark.socks.model.Sock;
+import com.backspark.socks.model.SockKey;
+import com.backspark.socks.repository.LedgerCheckpointRepository;
+import com.backspark.socks.repository.MovementHistoryRepository;
+import com.backspark.socks.repository.SockRepository;
+import com.backspark.socks.service.cache.SockQueryCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+class WriteBehindLedgerTest {
+
+    private static final SockKey RED = new SockKey("red", 50);
+
+    @TempDir
+    Path journalDir;
+
+    private SockRepository sockRepository;
+    private LedgerCheckpointRepository checkpointRepository;
+    private MovementHistoryRepository movementHistory;
+    private SocksProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        sockRepository = mock(SockRepository.class);
+        checkpointRepository = mock(LedgerCheckpointRepository.class);
+        movementHistory = mock(MovementHistoryRepository.class);
+        properties = new SocksProperties();
+        properties.getWriteBehind().setJournalDir(journalDir.toString());
+        properties.getWriteBehind().setFsync(false);
+
+        when(sockRepository.findByColorAndCottonPart("red", 50))
+                .thenReturn(Optional.of(new Sock(1L, "red", 50, 10)));
+    }
+
+    @Test
+    void flushShouldWriteCoalescedDeltas() {
+        WriteBehindLedger ledger = startLedger();
+
+        ledger.registerIncome(RED, 5);
+        ledger.registerOutcome(RED, 12);
+        ledger.registerIncome(RED, 1);
+
+        assertEquals(1, ledger.flush());
+        // The upsert would fail on PostgreSQL: the quantity check sees the negative insert row first
+        verify(sockRepository, never()).addQuantities(anyMap());
+        verify(sockRepository).adjustQuantities(Map.of(RED, -6));
+        verify(movementHistory).append(MovementSource.WRITE_BEHIND, Map.of(), Map.of(RED, 6));
+        verify(checkpointRepository).save(new LedgerCheckpoint(LedgerCheckpoint.ID, 0L));
+    }
+
+    @Test
+    void registerOutcomeShouldThrowException_whenCountersAreInsufficient() {
+        WriteBehindLedger ledger = startLedger();
+
+        ledger.registerOutcome(RED, 8);
+
+        assertThrows(InsufficientSocksException.class, () -> ledger.registerOutcome(RED, 3));
+        assertThrows(InsufficientSocksException.class, () -> ledger.registerOutcome(new SockKey("blue", 10), 1));
+    }
+
+    @Test
+    void onExternalChangeShouldNotCountChange_whenCounterWasLoadedAfterCommit() {
+        WriteBehindLedger ledger = startLedger();
+        // An import added 5 socks and committed, the counter is loaded before its callback runs
+        when(sockRepository.findByColorAndCottonPart("red", 50))
+                .thenReturn(Optional.of(new Sock(1L, "red", 50, 15)));
+        ledger.registerIncome(RED, 3);
+
+        ledger.onExternalChange(Set.of(RED));
+
+        ledger.registerOutcome(RED, 18);
+        assertThrows(InsufficientSocksException.class, () -> ledger.registerOutcome(RED, 1));
+    }
+
+    @Test
+    void onExternalChangeShouldAddChangeToPendingMovements() {
+        WriteBehindLedger ledger = startLedger();
+        ledger.registerIncome(RED, 3);
+        when(sockRepository.findByColorAndCottonPart("red", 50))
+                .thenReturn(Optional.of(new Sock(1L, "red", 50, 15)));
+
+        ledger.onExternalChange(Set.of(RED));
+
+        ledger.registerOutcome(RED, 18);
+        assertThrows(InsufficientSocksException.class, () -> ledger.registerOutcome(RED, 1));
+    }
+
+    @Test
+    void registerIncomeShouldThrowException_whenQuantityWouldOverflow() {
+        when(sockRepository.findByColorAndCottonPart("red", 50))
+                .thenReturn(Optional.of(new Sock(1L, "red", 50, Integer.MAX_VALUE - 1)));
+        WriteBehindLedger ledger = startLedger();
+
+        ledger.registerIncome(RED, 1);
+
+        assertThrows(InvalidRequestException.class, () -> ledger.registerIncome(RED, 1));
+        assertThrows(InvalidRequestException.class, () -> ledger.registerAll(Map.of(RED, 1)));
+    }
+
+    @Test
+    void registerAllShouldApplyNothing_whenOneItemIsInsufficient() {
+        WriteBehindLedger ledger = startLedger();
+        SockKey blue = new SockKey("blue", 70);
+
+        Map<SockKey, String> rejected = ledger.registerAll(Map.of(RED, 4, blue, -1));
+
+        assertEquals(Map.of(blue, "Socks not found."), rejected);
+        assertEquals(0, ledger.flush());
+
+        assertEquals(Map.of(), ledger.registerAll(Map.of(RED, -10, blue, 2)));
+        assertEquals(2, ledger.flush());
+        verify(sockRepository).addQuantities(Map.of(blue, 2));
+        verify(sockRepository).adjustQuantities(Map.of(RED, -10));
+    }
+
+    @Test
+    void registerShouldRejectCottonPartOutOfRange_beforeJournaling() {
+        WriteBehindLedger ledger = startLedger();
+        SockKey invalid = new SockKey("red", 150);
+
+        assertThrows(InvalidRequestException.class, () -> ledger.registerIncome(invalid, 1));
+        assertThrows(InvalidRequestException.class, () -> ledger.registerOutcome(invalid, 1));
+        assertThrows(InvalidRequestException.class, () -> ledger.registerAll(Map.of(RED, 1, invalid, 1)));
+
+        assertEquals(0, ledger.flush());
+        verify(sockRepository, never()).findByColorAndCottonPart("red", 150);
+    }
+
+    @Test
+    void flushShouldDropDeltasRejectedByDatabase_andStoreTheOthers() {
+        SockKey blue = new SockKey("blue", 70);
+        rejectIncomesOf(blue);
+        WriteBehindLedger ledger = startLedger();
+        ledger.registerIncome(RED, 2);
+        ledger.registerIncome(blue, 3);
+
+        assertEquals(1, ledger.flush());
+
+        verify(movementHistory).append(MovementSource.WRITE_BEHIND, Map.of(RED, 2), Map.of());
+        verify(checkpointRepository).save(new LedgerCheckpoint(LedgerCheckpoint.ID, 0L));
+        // The rejected delta is neither retried nor left in the counter
+        assertEquals(0, ledger.flush());
+        assertThrows(InsufficientSocksException.class, () -> ledger.registerOutcome(blue, 1));
+    }
+
+    @Test
+    void recoverShouldStart_whenDatabaseRejectsReplayedDelta() {
+        SockKey blue = new SockKey("blue", 70);
+        WriteBehindLedger crashed = startLedger();
+        crashed.registerIncome(RED, 2);
+        crashed.registerIncome(blue, 3);
+        rejectIncomesOf(blue);
+
+        startLedger();
+
+        verify(movementHistory).append(MovementSource.WRITE_BEHIND, Map.of(RED, 2), Map.of());
+        verify(checkpointRepository).save(new LedgerCheckpoint(LedgerCheckpoint.ID, 0L));
+    }
+
+    @Test
+    void recoverShouldReplayUnflushedJournal() {
+        WriteBehindLedger crashed = startLedger();
+        crashed.registerIncome(RED, 7);
+        crashed.registerOutcome(RED, 2);
+        // no flush and no shutdown: the process died
+
+        WriteBehindLedger restarted = startLedger();
+
+        verify(sockRepository, times(1)).addQuantities(Map.of(RED, 5));
+        assertEquals(0, restarted.flush());
+    }
+
+    @Test
+    void recoverShouldReplayNegativeDeltasAsUpdates() {
+        WriteBehindLedger crashed = startLedger();
+        crashed.registerOutcome(RED, 4);
+
+        startLedger();
+
+        verify(sockRepository, never()).addQuantities(anyMap());
+        verify(sockRepository).adjustQuantities(Map.of(RED, -4));
+    }
+
+    @Test
+    void recoverShouldSkipSegmentsCoveredByCheckpoint() {
+        WriteBehindLedger ledger = startLedger();
+        ledger.registerIncome(RED, 7);
+        ledger.flush();
+        when(checkpointRepository.findById(LedgerCheckpoint.ID))
+                .thenReturn(Optional.of(new LedgerCheckpoint(LedgerCheckpoint.ID, 0L)));
+        clearInvocations(sockRepository);
+
+        startLedger();
+
+        verify(sockRepository, never()).addQuantities(anyMap());
+    }
+
+    private void rejectIncomesOf(SockKey key) {
+        doAnswer(invocation -> {
+            Map<SockKey, Integer> quantities = invocation.getArgument(0);
+            if (quantities.containsKey(key)) {
+                throw new DataIntegrityViolationException("ck_socks_quantity");
+            }
+            return 1;
+        }).when(sockRepository).addQuantities(anyMap());
+    }
+
+    private WriteBehindLedger startLedger() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        WriteBehindLedger ledger = new WriteBehindLedger(sockRepository, checkpointRepository, movementHistory,
+                new TransactionTemplate(transactionManager),
+                new SockQueryCache(properties, new SimpleMeterRegistry()), properties);
+        ledger.recover();
+        return ledger;
+    }
+}